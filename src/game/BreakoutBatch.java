@@ -0,0 +1,260 @@
+package game;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The BreakoutBatch class plays many breakout games without a window, in parallel on all cores,
+ * with a computer player that follows the ball at a limited speed.
+ * It reports how often the bricks are cleared and how long the games last, to test level balance.
+ * In stress mode it instead keeps many balls in play and checks that a simulation step stays within its time budget.
+ * In record mode it plays one game, optionally on a level file, and records it to a replay; the replays in
+ * game/replays are made this way and are played back by the build to catch changes of the physics.
+ * <p>
+ * Usage: java game.BreakoutBatch [games] [paddleSpeed] [seed]
+ * <br>
+ * or:    java game.BreakoutBatch stress [balls] [steps]
+ * <br>
+ * or:    java game.BreakoutBatch record replayFile [paddleSpeed] [seed] [levelFile]
+ */
+public class BreakoutBatch implements Constant{
+
+    private static final int GAMES_PER_TASK = 256;          // Games one task plays before it stops splitting
+    private static final long MAX_TICKS_PER_ROUND = 1_000_000; // Rounds that last longer are counted as lost
+
+    private final double paddleSpeed;                        // Pixels the computer paddle moves per step
+    private final long seed;                                 // Seed of the first game; game i uses seed + i
+
+    /**
+     * Creates a batch runner.
+     *
+     * @param paddleSpeed The largest distance the computer paddle moves in one step.
+     * @param seed        The seed of the first game.
+     */
+    public BreakoutBatch(double paddleSpeed, long seed) {
+        this.paddleSpeed = paddleSpeed;
+        this.seed = seed;
+    }
+
+    /**
+     * Plays the given number of games on the common fork-join pool.
+     *
+     * @param games The number of games.
+     * @return The statistics of all games together.
+     */
+    public Stats run(int games) {
+        return ForkJoinPool.commonPool().invoke(new BatchTask(0, games));
+    }
+
+    /**
+     * Plays one game on the application-sized stage until it is over.
+     *
+     * @param gameSeed The seed of the game.
+     * @param stats    The statistics the game is added to.
+     */
+    void playGame(long gameSeed, Stats stats) {
+        play(new BreakoutSimulation(APPLICATION_WIDTH, APPLICATION_HEIGHT, gameSeed), stats);
+    }
+
+    /**
+     * Plays one game on the application-sized stage like playGame and records it to a replay file.
+     *
+     * @param file     The replay file, which is overwritten.
+     * @param gameSeed The seed of the game.
+     * @param level    The level to play, or null for the default bricks.
+     * @return The statistics of the game.
+     * @throws IOException If the replay file cannot be created.
+     */
+    public Stats recordGame(Path file, long gameSeed, BreakoutLevel level) throws IOException {
+        BreakoutSimulation simulation = new BreakoutSimulation(APPLICATION_WIDTH, APPLICATION_HEIGHT, gameSeed);
+        BreakoutReplay.Recorder recorder = new BreakoutReplay.Recorder(file, simulation);
+        simulation.setRecorder(recorder);
+        if (level != null) {
+            simulation.loadLevel(level.createGrid(APPLICATION_WIDTH));
+        }
+        Stats stats = new Stats();
+        play(simulation, stats);
+        recorder.finish(simulation.checksum());
+        return stats;
+    }
+
+    /**
+     * Plays a new simulation until the game is over and adds it to the statistics.
+     */
+    private void play(BreakoutSimulation simulation, Stats stats) {
+        while (!simulation.isGameOver()) {
+            simulation.startRound();
+            long roundStart = simulation.getTicks();
+            while (simulation.getState() == BreakoutSimulation.State.PLAYING
+                    && simulation.getTicks() - roundStart < MAX_TICKS_PER_ROUND) {
+                movePaddle(simulation);
+                simulation.step();
+            }
+            if (simulation.getState() == BreakoutSimulation.State.PLAYING) {
+                stats.timeouts++;
+                break;
+            }
+        }
+        stats.games++;
+        if (simulation.getBricks().getAliveCount() == 0) {
+            stats.cleared++;
+        }
+        stats.bounces += simulation.getPaddleBounces();
+        stats.bricks += simulation.getBricks().getBrickCount() - simulation.getBricks().getAliveCount();
+        stats.ticks += simulation.getTicks();
+    }
+
+    /**
+     * Moves the computer paddle towards the center of the lowest falling ball, at most paddleSpeed per step.
+     */
+    private void movePaddle(BreakoutSimulation simulation) {
+        EntityStore balls = simulation.getBalls();
+        int lowest = 0;
+        for (int i = 1; i < balls.size(); i++) {
+            if (balls.getVy(i) > 0 && (balls.getVy(lowest) <= 0 || balls.getY(i) > balls.getY(lowest))) {
+                lowest = i;
+            }
+        }
+        double target = balls.getX(lowest) + BALL_RADIUS - PADDLE_WIDTH / 2.0;
+        double move = Math.max(-paddleSpeed, Math.min(target - simulation.getPaddleX(), paddleSpeed));
+        simulation.setPaddleX(simulation.getPaddleX() + move);
+    }
+
+    /**
+     * Plays the games with the seeds in [from, to), splitting the range in halves until it is small.
+     */
+    private class BatchTask extends RecursiveTask<Stats>{
+        private static final long serialVersionUID = 1L;
+
+        private final int from, to;
+
+        BatchTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Stats compute() {
+            if (to - from <= GAMES_PER_TASK) {
+                Stats stats = new Stats();
+                for (int i = from; i < to; i++) {
+                    playGame(seed + i, stats);
+                }
+                return stats;
+            }
+            int middle = (from + to) >>> 1;
+            BatchTask right = new BatchTask(middle, to);
+            right.fork();
+            Stats left = new BatchTask(from, middle).compute();
+            return left.add(right.join());
+        }
+    }
+
+    /**
+     * Totals over a number of games.
+     */
+    public static class Stats{
+        long games;         // Games played
+        long cleared;       // Games in which all bricks were broken
+        long bounces;       // Bounces off the paddle
+        long bricks;        // Bricks broken
+        long ticks;         // Simulation steps
+        long timeouts;      // Rounds stopped after MAX_TICKS_PER_ROUND
+
+        Stats add(Stats other) {
+            games += other.games;
+            cleared += other.cleared;
+            bounces += other.bounces;
+            bricks += other.bricks;
+            ticks += other.ticks;
+            timeouts += other.timeouts;
+            return this;
+        }
+
+        public double clearRate() {
+            return games == 0 ? 0 : (double) cleared / games;
+        }
+
+        public double averageBounces() {
+            return games == 0 ? 0 : (double) bounces / games;
+        }
+
+        @Override
+        public String toString() {
+            double perGame = games == 0 ? 0 : 1.0 / games;
+            return String.format("%d games: clear rate %.2f%%, %.1f paddle bounces, %.1f bricks, %.0f ticks"
+                            + " (%.0f s of play) per game, %d timeouts",
+                    games, 100 * clearRate(), averageBounces(), bricks * perGame, ticks * perGame,
+                    ticks * perGame * TICK_TIME / 1000, timeouts);
+        }
+    }
+
+    /**
+     * Keeps the given number of balls in play for the given number of steps, starting a new game whenever the
+     * bricks are gone, and measures every step.
+     *
+     * @param ballCount The number of balls to keep in play.
+     * @param steps     The number of steps to measure.
+     * @return True if 99% of the steps took less than a quarter of TICK_TIME, leaving the rest for rendering.
+     */
+    public boolean stress(int ballCount, int steps) {
+        long[] times = new long[steps];
+        BreakoutSimulation simulation = null;
+        for (int i = 0; i < steps; i++) {
+            if (simulation == null || simulation.getState() != BreakoutSimulation.State.PLAYING) {
+                simulation = new BreakoutSimulation(APPLICATION_WIDTH, APPLICATION_HEIGHT, seed + i);
+                simulation.startRound();
+            }
+            long start = System.nanoTime();
+            simulation.fillBalls(ballCount);
+            movePaddle(simulation);
+            simulation.step();
+            times[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(times);
+        double budget = TICK_TIME / 4.0;
+        double p99 = times[(int) (steps * 0.99)] / 1e6;
+        System.out.printf("%d balls, %d steps: median %.3f ms, 99%% %.3f ms, max %.3f ms, budget %.2f ms%n",
+                ballCount, steps, times[steps / 2] / 1e6, p99, times[steps - 1] / 1e6, budget);
+        return p99 <= budget;
+    }
+
+    /**
+     * Runs a batch and prints its statistics and speed, or runs the stress mode.
+     */
+    public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("stress")) {
+            int balls = args.length > 1 ? Integer.parseInt(args[1]) : STRESS_BALLS;
+            int steps = args.length > 2 ? Integer.parseInt(args[2]) : 100_000;
+            boolean withinBudget = new BreakoutBatch(PADDLE_WIDTH, 1).stress(balls, steps);
+            System.out.println(withinBudget ? "within budget" : "OVER BUDGET");
+            System.exit(withinBudget ? 0 : 1);
+        }
+        if (args.length > 1 && args[0].equals("record")) {
+            double paddleSpeed = args.length > 2 ? Double.parseDouble(args[2]) : 2.5;
+            long seed = args.length > 3 ? Long.parseLong(args[3]) : 1;
+            try {
+                BreakoutLevel level = args.length > 4 ? BreakoutLevel.load(Paths.get(args[4])) : null;
+                System.out.println(new BreakoutBatch(paddleSpeed, seed).recordGame(Paths.get(args[1]), seed, level));
+            } catch (IOException e) {
+                System.err.println(e.getMessage());
+                System.exit(1);
+            }
+            return;
+        }
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        double paddleSpeed = args.length > 1 ? Double.parseDouble(args[1]) : 2.5;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 1;
+
+        long start = System.nanoTime();
+        Stats stats = new BreakoutBatch(paddleSpeed, seed).run(games);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.println(stats);
+        System.out.printf("%.1f s, %.0f games/s, %.1f M ticks/s on %d threads%n", seconds, games / seconds,
+                stats.ticks / seconds / 1e6, ForkJoinPool.commonPool().getParallelism());
+    }
+}
@@ -1,75 +1,139 @@
 package game;
 
 import acm.graphics.GLabel;
-import acm.graphics.GObject;
 import acm.graphics.GOval;
 import acm.graphics.GRect;
 import acm.util.RandomGenerator;
 import com.shpp.cs.a.graphics.WindowProgram;
 
+import javax.swing.SwingUtilities;
 import java.awt.*;
 import java.awt.event.*;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
 
 /**
  * The BreakoutGame class implements a simple breakout game where the player
  * controls a paddle to bounce a ball and break bricks.
+ * The rules are played by a BreakoutSimulation; this class draws it and feeds it the mouse.
+ * Every game is recorded to REPLAY_FILE, which BreakoutReplay plays back.
+ * It always plays the bricks of the game constants; level files are played by BreakoutWindow.
  */
 
 public class BreakoutGame extends WindowProgram implements Constant{
 
     // Instance variables
     private final GRect paddle = createPaddle();          // Paddle object
-    private double vx, vy;                              // Velocity components of the ball
-    private int bricksOnStage = N_BRICK_ROWS * N_BRICKS_PER_ROW; // Number of bricks currently on the stage
+    private BreakoutSimulation simulation;              // The game rules and state the canvas shows
+    private final FrameMetrics metrics = new FrameMetrics(); // Frame, update and render times of the game loop
+    private final GLabel metricsLabel = new GLabel("");  // Optional on-screen overlay with the metrics
+    private boolean showMetrics;                        // Whether the metrics overlay is shown
+    private GRect[] bricks;                             // Brick objects on the canvas, by BrickGrid index
+    private final ArrayList<GOval> balls = new ArrayList<>();    // Ball objects, one per ball of the simulation
+    private final ArrayList<GRect> powerUps = new ArrayList<>(); // Power-up objects, one per falling power-up
+    private boolean stressMode;                         // Whether STRESS_BALLS balls are kept in play
+    private volatile double mouseX = Double.NaN;        // Last x coordinate of the mouse, until the next step
+    private BreakoutReplay.Recorder recorder;           // Records the game to REPLAY_FILE, or null
+    private final TextLayoutService textLayout = new TextLayoutService("Arial"); // Font sizes of the messages
+    private final ArrayDeque<GLabel> messages = new ArrayDeque<>(); // Messages waiting to be shown, in order; event thread only
+    private GLabel message;                             // Message on the canvas, or null; event thread only
+    private final javax.swing.Timer messageTimer = new javax.swing.Timer(FREEZE_TIME, e -> showNextMessage());
 
     /**
      * Initializes the game and runs it.
      */
     public void run() {
+        simulation = new BreakoutSimulation(getWidth(), getHeight(), System.nanoTime());
+        simulation.setListener(new BreakoutSimulation.Listener() {
+            @Override
+            public void brickRemoved(int row, int column, int ball) {
+                removeBrick(row, column, ball);
+            }
+
+            @Override
+            public void ballRemoved(int ball) {
+                removeBall(ball);
+            }
+        });
+        startRecording();
         addMouseListeners();
+        addKeyListeners();
         startGame();
+        if (recorder != null) {
+            recorder.finish(simulation.checksum());
+        }
     }
 
     /**
-     * Responds to mouse movement events by updating the position of the paddle.
-     *
-     * @param e The MouseEvent containing information about the mouse movement.
+     * Starts recording the game to REPLAY_FILE; if the file cannot be created, the game is played without it.
      */
-    public void mouseMoved(MouseEvent e) {
-        int mousePositionX = e.getX();
-        int paddleX = mousePositionX - PADDLE_WIDTH / 2;
-        int paddleY = getHeight() - PADDLE_Y_OFFSET;
-        movePaddleToPosition(paddleX, paddleY);
+    private void startRecording() {
+        try {
+            recorder = new BreakoutReplay.Recorder(Paths.get(REPLAY_FILE), simulation);
+            simulation.setRecorder(recorder);
+        } catch (IOException e) {
+            System.err.println("Cannot record the replay: " + e.getMessage());
+        }
     }
 
     /**
-     * Moves the paddle's position to the specified coordinates (paddleX, paddleY).
-     * Ensures that the paddle remains within the horizontal bounds of the game window.
+     * Toggles the frame metrics overlay when the M key is pressed, and the stress mode when the S key is pressed.
+     * The stress mode keeps STRESS_BALLS balls in play and shows the metrics, to check the frame time budget.
      *
-     * @param paddleX The desired X-coordinate for the paddle.
-     * @param paddleY The Y-coordinate for the paddle (usually the bottom of the window).
+     * @param e The KeyEvent containing information about the pressed key.
      */
-    private void movePaddleToPosition(int paddleX, int paddleY) {
-        int minX = 0;
-        int maxX = getWidth() - PADDLE_WIDTH;
-        paddleX = Math.max(minX, Math.min(paddleX, maxX));
-        paddle.setLocation(paddleX, paddleY);
+    public void keyPressed(KeyEvent e) {
+        if (e.getKeyCode() == KeyEvent.VK_S) {
+            stressMode = !stressMode;
+            if (stressMode != showMetrics) {
+                toggleMetrics();
+            }
+        } else if (e.getKeyCode() == KeyEvent.VK_M) {
+            toggleMetrics();
+        }
+    }
+
+    /**
+     * Shows or hides the frame metrics overlay.
+     */
+    private void toggleMetrics() {
+        showMetrics = !showMetrics;
+        if (showMetrics) {
+            metricsLabel.setFont("Monospaced-10");
+            add(metricsLabel, 4, getHeight() - 4);
+        } else {
+            remove(metricsLabel);
+        }
     }
 
+    /**
+     * Responds to mouse movement events by moving the paddle on the canvas under the mouse,
+     * within the horizontal bounds of the game window.
+     * The game loop moves the paddle of the simulation there before the next step, so that the simulation
+     * only changes on the game thread and every step sees, and records, one paddle position.
+     *
+     * @param e The MouseEvent containing information about the mouse movement.
+     */
+    public void mouseMoved(MouseEvent e) {
+        mouseX = e.getX();
+        if (simulation != null) {
+            double x = Math.max(0, Math.min(mouseX - PADDLE_WIDTH / 2.0, getWidth() - PADDLE_WIDTH));
+            paddle.setLocation(x, simulation.getPaddleY());
+        }
+    }
 
     /**
-     * Sets the initial speed of the ball by generating random velocities for the horizontal (vx) and vertical
-     * (vy) directions.
-     * The horizontal velocity (vx) is randomly chosen between 1.0 and 3.0, and its sign may be negated randomly.
-     * The vertical velocity (vy) is set to a constant value (BALL_SPEED).
+     * Moves the paddle of the simulation under the mouse, and the paddle on the canvas with it.
+     * The simulation keeps the paddle within the horizontal bounds of the game window.
      */
-    private void setRandomBallSpeed() {
-        RandomGenerator rgen = RandomGenerator.getInstance();
-        vx = rgen.nextDouble(1.0, 3.0);
-        if (rgen.nextBoolean(0.5)) {
-            vx = -vx;
+    private void movePaddle() {
+        if (!Double.isNaN(mouseX)) {
+            simulation.setPaddleX(mouseX - PADDLE_WIDTH / 2.0);
         }
-        vy = BALL_SPEED;
+        paddle.setLocation(simulation.getPaddleX(), simulation.getPaddleY());
     }
 
 
@@ -77,121 +141,166 @@ public class BreakoutGame extends WindowProgram implements Constant{
      * Initializes and manages the game loop, allowing the player a limited number of attempts to win.
      * - Draws the bricks on the game screen.
      * - Displays a label informing the player about the number of attempts remaining.
-     * - Enters a loop where the player has a limited number of attempts (NUM_TURNS) and there are bricks left.
+     * - Enters a loop that lasts until the simulation is over (no attempts or no bricks left).
      * - Adds the paddle to the game screen.
-     * - Sets the ball's initial speed.
+     * - Starts a round of the simulation, which sets the ball's initial speed.
      * - Draws the ball on the game screen.
      * - Shows a label with the number of attempts remaining.
      * - Waits for the player to click to start the round.
      * - Calls the playRound method to handle the current round.
-     * - Decrements the count of remaining attempts.
      * - Displays a "GAME OVER" label when the game loop ends (when the player runs out of attempts or clears all bricks).
      */
     private void startGame() {
         drawBrickLayout();
-        int countAttempts = NUM_TURNS;
         showLabelWithTimer("YOU HAVE THREE ATTEMPTS TO WIN!!! ", getRandomColor());
-        while (countAttempts > 0 && bricksOnStage > 0) {
+        while (!simulation.isGameOver()) {
             add(paddle);
-            setRandomBallSpeed();
-            GOval ball = createBall();
+            int countAttempts = simulation.getTurnsLeft();
+            simulation.startRound();
+            renderEntities(0);
             showLabelWithTimer("Attempts left: " + countAttempts, getRandomColor());
             waitForClick();
-            playRound(ball);
-            countAttempts--;
+            clearMessages();
+            playRound();
         }
         showLabelWithTimer("GAME OVER", getRandomColor());
     }
 
     /**
      * Manages a single round of the game where the ball interacts with bricks and the paddle.
-     * - Enters a loop that continues until the round is over (when gameOver is false).
-     * - Checks for collisions between the ball and bricks using the collideObject method.
-     * - Handles collisions with stage limits (walls and ceiling) using the collideStageLimits method.
-     * - Checks if the ball has missed the paddle using the hasMissedPaddle method.
-     * - If the ball has missed the paddle:
-     * - Displays "WASTED" message.
-     * - Clears the stage, removing the ball.
-     * - Breaks out of the loop to end the round.
-     * - Moves the ball based on its velocity (vx, vy).
-     * - Checks if there are any bricks left using the areBricksLeft method.
-     * - If there are no bricks left:
-     * - Displays "YOU WIN!" message.
-     * - Clears the stage, removing the ball.
-     * - Sets gameOver to true to indicate that the game has been won.
-     * - Pauses for a short duration (PAUSE_TIME) to control the animation speed.
-     *
-     * @param ball The GOval representing the game ball.
+     * - The simulation advances in fixed steps of TICK_TIME, independent of how long a frame takes:
+     * the time of every frame is added to an accumulator, and one step is taken for every TICK_TIME in it.
+     * A frame longer than MAX_FRAME_TIME only counts as MAX_FRAME_TIME, so the game does not spiral after a hitch.
+     * - The ball is drawn between its last two simulated positions, by the fraction of a step left in the accumulator.
+     * - Each step is one BreakoutSimulation.step.
+     * - If the ball has missed the paddle, "WASTED" is shown and the stage is cleared.
+     * - If there are no bricks left, "YOU WIN!" is shown and the stage is cleared.
+     * - The loop sleeps away what is left of FRAME_TIME after rendering.
      */
-    private void playRound(GOval ball) {
-        boolean gameOver = false;
-        while (!gameOver) {
-            bricksOnStage = collideObject(ball, bricksOnStage);
-            collideWithStageLimits(ball);
-            if (hasMissedPaddle(ball)) {
-                showLabelWithTimer("WASTED", getRandomColor());
-                clearStage(ball);
-                break;
+    private void playRound() {
+        metrics.resetWorst();
+        long previousFrame = System.nanoTime();
+        double accumulator = 0;
+        BreakoutSimulation.State state = BreakoutSimulation.State.PLAYING;
+
+        while (state == BreakoutSimulation.State.PLAYING) {
+            long frameStart = System.nanoTime();
+            double frameTime = Math.min((frameStart - previousFrame) / 1e6, MAX_FRAME_TIME);
+            previousFrame = frameStart;
+            accumulator += frameTime;
+
+            int ticks = 0;
+            if (stressMode) {
+                simulation.fillBalls(STRESS_BALLS);
             }
-            ball.move(vx, vy);
-            if (areBricksLeft(bricksOnStage)) {
-                showLabelWithTimer("YOU WIN!", getRandomColor());
-                clearStage(ball);
-                gameOver = true;
+            while (accumulator >= TICK_TIME && state == BreakoutSimulation.State.PLAYING) {
+                movePaddle();
+                state = simulation.step();
+                accumulator -= TICK_TIME;
+                ticks++;
+            }
+            long updateEnd = System.nanoTime();
+
+            renderEntities(accumulator / TICK_TIME);
+            if (showMetrics) {
+                metricsLabel.setLabel(metrics.summary() + "  balls " + simulation.getBalls().size());
+            }
+            long renderEnd = System.nanoTime();
+            metrics.record(frameTime, updateEnd - frameStart, renderEnd - updateEnd, ticks);
+
+            double spare = FRAME_TIME - (renderEnd - frameStart) / 1e6;
+            if (spare > 0) {
+                pause(spare);
             }
-            pause(PAUSE_TIME);
         }
-    }
 
+        renderEntities(1);
+        if (state == BreakoutSimulation.State.MISSED) {
+            showLabelWithTimer("WASTED", getRandomColor());
+        } else {
+            showLabelWithTimer("YOU WIN!", getRandomColor());
+        }
+        clearStage();
+    }
 
     /**
-     * Detects and handles collisions between the ball and game objects (paddle and bricks).
-     * - Takes a GOval ball and the current count of bricks on the stage as parameters.
-     * - Retrieves the object (collider) that the ball collides with using the getCollidingObject method.
-     * - Checks if the collider is the paddle and the ball is moving downward (vy > 0).
-     * - If true, the ball's vertical velocity (vy) is reversed, causing it to bounce off the paddle.
-     * - Checks if the collider is a brick.
-     * - If true, removes the brick from the stage using the remove method.
-     * - Reverses the ball's vertical velocity (vy), making it bounce.
-     * - Decrements the count of bricks on the stage (bricksOnStage) by 1.
-     * - Returns the updated count of bricks on the stage after handling collisions.
+     * Draws every ball and power-up between its previous and its current simulated position.
+     * There is one GOval per ball and one GRect per power-up; objects are added and removed
+     * only when the number of balls or power-ups changes.
      *
-     * @param ball          The GOval representing the game ball.
-     * @param bricksOnStage The current count of bricks remaining on the stage.
-     * @return The updated count of bricks on the stage after handling collisions.
+     * @param alpha How far the entities are between the two positions, from 0 to 1.
      */
-    private int collideObject(GOval ball, int bricksOnStage) {
-        GObject collider = checkCollisionsWithBall(ball);
-
-        if (isPaddle(collider) && vy > 0) {
-            vy = -vy;
-        } else if (isBrick(collider)) {
-            remove(collider);
-            vy = -vy;
-            bricksOnStage -= 1;
-            changeBallColor(ball);
+    private void renderEntities(double alpha) {
+        EntityStore ballStore = simulation.getBalls();
+        while (balls.size() < ballStore.size()) {
+            balls.add(createBall());
+        }
+        while (balls.size() > ballStore.size()) {
+            remove(balls.remove(balls.size() - 1));
+        }
+        for (int i = 0; i < ballStore.size(); i++) {
+            balls.get(i).setLocation(ballStore.getX(i, alpha), ballStore.getY(i, alpha));
         }
 
-        return bricksOnStage;
+        EntityStore powerUpStore = simulation.getPowerUps();
+        while (powerUps.size() < powerUpStore.size()) {
+            powerUps.add(createPowerUp());
+        }
+        while (powerUps.size() > powerUpStore.size()) {
+            remove(powerUps.remove(powerUps.size() - 1));
+        }
+        for (int i = 0; i < powerUpStore.size(); i++) {
+            powerUps.get(i).setLocation(powerUpStore.getX(i, alpha), powerUpStore.getY(i, alpha));
+        }
+    }
+
+    /**
+     * Shows that the simulation has broken a brick: removes its GRect and changes the color of the ball that hit it.
+     *
+     * @param row    The row of the brick in the brick grid.
+     * @param column The column of the brick in the brick grid.
+     * @param ball   The index of the ball that hit the brick.
+     */
+    private void removeBrick(int row, int column, int ball) {
+        remove(bricks[simulation.getBricks().index(row, column)]);
+        if (ball < balls.size()) {
+            changeBallColor(balls.get(ball));
+        }
     }
 
 
     /**
-     * Generates and returns a random color.
-     * - Utilizes the RandomGenerator class to create random RGB values for the color.
+     * Follows the ball store when a ball is removed: the GOval of the last ball takes the index of the removed one,
+     * so every ball keeps its color, and the GOval of the removed ball goes last, where renderEntities removes it.
      *
-     * @return A randomly generated Color object.
+     * @param ball The index of the removed ball.
+     */
+    private void removeBall(int ball) {
+        int last = simulation.getBalls().size() - 1;
+        if (last < balls.size()) {
+            Collections.swap(balls, ball, last);
+        } else if (ball < balls.size()) {
+            // The last ball has no GOval yet; the removed ball's GOval is reused for it.
+            balls.get(ball).setColor(Color.gray);
+        }
+    }
+
+    /**
+     * Returns a random color of the precomputed ball palette.
+     * - Utilizes the RandomGenerator class to pick an index, so no Color object is allocated.
+     *
+     * @return A color from BreakoutRenderer.BALL_COLORS.
      */
     private Color getRandomColor() {
         RandomGenerator rgen = RandomGenerator.getInstance();
-        return new Color(rgen.nextInt(256), rgen.nextInt(256), rgen.nextInt(256));
+        return BreakoutRenderer.BALL_COLORS[rgen.nextInt(BreakoutRenderer.BALL_COLORS.length)];
     }
 
     /**
      * Changes the color of the specified GOval object to a random color.
      * - Accepts a GOval object (ball) as a parameter.
      * - Checks if the ball is not null.
-     * - If true, sets the color of the ball to a randomly generated color using getRandomColor.
+     * - If true, sets the color of the ball to a random palette color using getRandomColor.
      *
      * @param ball The GOval object whose color will be changed.
      */
@@ -201,29 +310,34 @@ public class BreakoutGame extends WindowProgram implements Constant{
         }
     }
 
+    /**
+     * Lays out the bricks in the brick grid and adds a GRect for every brick to the canvas.
+     * Rows of bricks alternate colors every two rows.
+     */
     private void drawBrickLayout() {
-        int brickWidth = (getWidth() - (N_BRICKS_PER_ROW - 1) * BRICK_SEP) / N_BRICKS_PER_ROW;
-        int topLeftY = BRICK_Y_OFFSET;
+        BrickGrid brickGrid = simulation.getBricks();
+        bricks = new GRect[brickGrid.getRows() * brickGrid.getColumns()];
 
-        for (int i = 0; i < N_BRICK_ROWS; i++) {
+        for (int i = 0; i < brickGrid.getRows(); i++) {
             // Get the color for the current row of bricks (alternating colors)
             Color brickColor = getBrickColor(i / 2);
-            drawRowOfBricks(topLeftY, brickWidth, brickColor);
-            topLeftY += BRICK_HEIGHT + BRICK_SEP;
+            drawRowOfBricks(brickGrid, i, brickColor);
         }
     }
 
-    private void drawRowOfBricks(int y, int brickWidth, Color color) {
-        for (int j = 0; j < Constant.N_BRICKS_PER_ROW; j++) {
-            drawBrick((brickWidth + BRICK_SEP) * j, y, brickWidth, color);
+    private void drawRowOfBricks(BrickGrid brickGrid, int row, Color color) {
+        for (int j = 0; j < brickGrid.getColumns(); j++) {
+            bricks[brickGrid.index(row, j)] = drawBrick(brickGrid.brickX(j), brickGrid.brickY(row),
+                    brickGrid.getBrickWidth(), brickGrid.getBrickHeight(), color);
         }
     }
 
-    private void drawBrick(int x, int y, int width, Color color) {
-        GRect brick = new GRect(x, y, width, Constant.BRICK_HEIGHT);
+    private GRect drawBrick(double x, double y, double width, double height, Color color) {
+        GRect brick = new GRect(x, y, width, height);
         brick.setFilled(true);
         brick.setColor(color);
         add(brick);
+        return brick;
     }
 
     /**
@@ -233,41 +347,9 @@ public class BreakoutGame extends WindowProgram implements Constant{
      * @return The color for the specified row.
      */
     private Color getBrickColor(int row) {
-        Color[] colors = {Color.RED, Color.ORANGE, Color.YELLOW, Color.GREEN, Color.CYAN};
-        return colors[row % colors.length];
-    }
-
-    /**
-     * Checks for collisions with different parts of the ball and returns the colliding object.
-     *
-     * @param ball The ball to check for collisions.
-     * @return The colliding object or null if there is no collision.
-     */
-    private GObject checkCollisionsWithBall(GOval ball) {
-        // Get the current position and diameter of the ball
-        double x = ball.getX();
-        double y = ball.getY();
-        double diameter = 2 * BALL_RADIUS;
-
-        // Check for collisions with the four corners of the ball
-        GObject leftTop = getElementAt(x, y);
-        GObject rightTop = getElementAt(x + diameter, y);
-        GObject leftBottom = getElementAt(x, y + diameter);
-        GObject rightBottom = getElementAt(x + diameter, y + diameter);
-
-        // Return the first non-null colliding object, or null if no collision
-        if (leftTop != null) {
-            return leftTop;
-        } else if (rightTop != null) {
-            return rightTop;
-        } else if (leftBottom != null) {
-            return leftBottom;
-        } else {
-            return rightBottom;
-        }
+        return BreakoutRenderer.BRICK_COLORS[row % BreakoutRenderer.BRICK_COLORS.length];
     }
 
-
     /**
      * Creates and returns a paddle (rectangular platform) with the specified dimensions and appearance.
      *
@@ -291,17 +373,15 @@ public class BreakoutGame extends WindowProgram implements Constant{
 
 
     /**
-     * Creates and returns a GOval representing the game ball with the specified dimensions and appearance.
+     * Creates and returns a GOval representing a game ball with the specified dimensions and appearance,
+     * and adds it to the canvas. It is placed by renderEntities.
      *
      * @return The GOval representing the game ball.
      */
     private GOval createBall() {
-        // Calculate the initial position and dimensions for the ball
-        double ballX = getWidth() / 2.0 - BALL_RADIUS;
-        double ballY = getHeight() / 2.0 - BALL_RADIUS;
         double ballDiameter = 2 * BALL_RADIUS;
 
-        GOval ball = new GOval(ballX, ballY, ballDiameter, ballDiameter);
+        GOval ball = new GOval(0, 0, ballDiameter, ballDiameter);
         ball.setFilled(true);
         ball.setColor(Color.gray);
         add(ball);
@@ -309,155 +389,97 @@ public class BreakoutGame extends WindowProgram implements Constant{
     }
 
     /**
-     * Checks if there are any bricks left on the stage.
+     * Creates and returns a GRect representing a falling multi-ball power-up, and adds it to the canvas.
      *
-     * @param bricksOnStage The number of bricks on the stage.
-     * @return true if there are no bricks left, false otherwise.
+     * @return The GRect representing the power-up.
      */
-    private boolean areBricksLeft(int bricksOnStage) {
-        return bricksOnStage == 0;
+    private GRect createPowerUp() {
+        GRect powerUp = new GRect(0, 0, POWER_UP_SIZE, POWER_UP_SIZE);
+        powerUp.setFilled(true);
+        powerUp.setColor(Color.MAGENTA);
+        add(powerUp);
+        return powerUp;
     }
 
     /**
-     * Clears the game stage by removing the ball and paddle from the canvas.
-     *
-     * @param ball The ball object to be removed.
+     * Clears the game stage by removing the balls, the power-ups and the paddle from the canvas.
      */
-    private void clearStage(GOval ball) {
-        remove(ball);
+    private void clearStage() {
+        for (GOval ball : balls) {
+            remove(ball);
+        }
+        balls.clear();
+        for (GRect powerUp : powerUps) {
+            remove(powerUp);
+        }
+        powerUps.clear();
         remove(paddle);
     }
 
     /**
-     * Displays a label with the specified text and color, centered on the canvas,
-     * and removes it after a specified time interval.
+     * Displays a label with the specified text and color, centered on the canvas, for FREEZE_TIME.
+     * - Returns at once: the game thread goes on while the label is shown.
+     * - If another label is being shown, this one waits for its turn, so every message is seen in order.
+     * - The queue is only touched on the event thread, where the messageTimer also removes the label
+     * and shows the next one, so no lock is needed.
      *
      * @param text  The text to be displayed on the label.
      * @param color The color of the label's text.
      */
     private void showLabelWithTimer(String text, Color color) {
         GLabel label = createCenteredLabel(text, color);
-        add(label);
-        pause(FREEZE_TIME);
-        remove(label);
-    }
-
-    /**
-     * Creates a GLabel with the specified text and color, centered on the canvas.
-     *
-     * @param text  The text to be displayed on the label.
-     * @param color The color of the label's text.
-     * @return The created GLabel.
-     */
-    private GLabel createCenteredLabel(String text, Color color) {
-        GLabel label = new GLabel(text);
-        label.setFont("Arial-" + calculateFontSize(text));
-        label.setColor(color);
-
-        // Position the label at the center of the canvas
-        double x = (getWidth() - label.getWidth()) / 2;
-        double y = (getHeight() - label.getHeight()) / 2;
-        label.setLocation(x, y);
-
-        return label;
-    }
-
-    /**
-     * Calculates and returns an appropriate font size for displaying the given text
-     * within the canvas bounds while leaving some margin.
-     *
-     * @param text The text for which the font size needs to be determined.
-     * @return The calculated font size that fits the text within canvas bounds.
-     */
-    private int calculateFontSize(String text) {
-        int fontSize = 60; // Initial font size to start with
-        int maxWidth = getWidth() - 20; // Maximum width within canvas bounds with a margin
-        int maxHeight = getHeight() - 20; // Maximum height within canvas bounds with a margin
-
-        while (true) {
-            GLabel tempLabel = new GLabel(text);
-            tempLabel.setFont("Arial-" + fontSize);
-
-            if (tempLabel.getBounds().getWidth() <= maxWidth && tempLabel.getBounds().getHeight() <= maxHeight) {
-                return fontSize; // Return the calculated font size
+        SwingUtilities.invokeLater(() -> {
+            messages.add(label);
+            if (message == null) {
+                showNextMessage();
             }
-
-            fontSize--; // Decrease the font size if the label doesn't fit
-        }
+        });
     }
 
-
     /**
-     * Checks if the given GObject is a paddle object.
-     *
-     * @param object The GObject to be checked.
-     * @return True if the object is a paddle, otherwise false.
-     */
-    private boolean isPaddle(GObject object) {
-        return (object == paddle);
-    }
-
-    /**
-     * Checks if the given GObject represents a brick object.
-     *
-     * @param object The GObject to be checked.
-     * @return True if the object is a brick, otherwise false.
+     * Drops the messages that are still waiting and removes the one that is shown,
+     * so that none of them appears over a round that has started.
      */
-    private boolean isBrick(GObject object) {
-        return object != null && object != paddle;
+    private void clearMessages() {
+        SwingUtilities.invokeLater(() -> {
+            messages.clear();
+            messageTimer.stop();
+            showNextMessage();
+        });
     }
 
     /**
-     * Checks for collisions between the ball and the stage limits and updates the ball's velocity accordingly.
-     *
-     * @param ball The ball object to check for collisions.
+     * Removes the label that is shown, and shows the next waiting one for FREEZE_TIME. Runs on the event thread.
      */
-    private void collideWithStageLimits(GOval ball) {
-        if (isBallCollidingWithCeiling(ball)) {
-            vy = -vy;
+    private void showNextMessage() {
+        if (message != null) {
+            remove(message);
         }
-        if (isBallCollidingWithRightWall(ball) || isBallCollidingWithLeftWall(ball)) {
-            vx = -vx;
+        message = messages.poll();
+        if (message != null) {
+            add(message);
+            messageTimer.setRepeats(false);
+            messageTimer.restart();
         }
     }
 
     /**
-     * Checks if the ball is colliding with the left wall of the stage.
-     *
-     * @param ball The ball object to check for collisions.
-     * @return True if the ball is colliding with the left wall, otherwise false.
-     */
-    private boolean isBallCollidingWithLeftWall(GOval ball) {
-        return ball.getX() <= 0;
-    }
-
-    /**
-     * Checks if the ball is colliding with the right wall of the stage.
+     * Creates a GLabel with the specified text and color, centered on the canvas.
      *
-     * @param ball The ball object to check for collisions.
-     * @return True if the ball is colliding with the right wall, otherwise false.
+     * @param text  The text to be displayed on the label.
+     * @param color The color of the label's text.
+     * @return The created GLabel.
      */
-    private boolean isBallCollidingWithRightWall(GOval ball) {
-        return ball.getX() + 2 * BALL_RADIUS >= getWidth();
-    }
+    private GLabel createCenteredLabel(String text, Color color) {
+        // The layout service finds the largest font that fits within the canvas bounds with a margin
+        TextLayoutService.Layout layout = textLayout.layout(text, getWidth(), getHeight());
+        GLabel label = new GLabel(text);
+        label.setFont(layout.font);
+        label.setColor(color);
 
-    /**
-     * Checks if the ball is colliding with the ceiling of the stage.
-     *
-     * @param ball The ball object to check for collisions.
-     * @return True if the ball is colliding with the ceiling, otherwise false.
-     */
-    private boolean isBallCollidingWithCeiling(GOval ball) {
-        return ball.getY() <= 0;
-    }
+        // Position the label at the center of the canvas
+        label.setLocation(layout.centerX(getWidth()), layout.baselineY(getHeight()));
 
-    /**
-     * Checks if the ball has missed the paddle and reached the bottom of the stage.
-     *
-     * @param ball The ball object to check.
-     * @return True if the ball has missed the paddle, otherwise false.
-     */
-    private boolean hasMissedPaddle(GOval ball) {
-        return ball.getY() + 2 * BALL_RADIUS >= getHeight();
+        return label;
     }
 }
@@ -0,0 +1,188 @@
+package game;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The BreakoutLevel class is a level read from a level file: the brick types it uses and the shape of its grid.
+ * A level file is plain text. Before the grid it has one setting per line, and '#' starts a comment:
+ * <pre>
+ * name    Diamond
+ * brick   r 1 FF0000       # a brick type: its character, hit points and RGB color
+ * brick   s 3 808080
+ * height  8                # brick height, default BRICK_HEIGHT
+ * gap     2                # separation between bricks, default BRICK_SEP
+ * top     70               # y coordinate of the first row, default BRICK_Y_OFFSET
+ * grid
+ * ....rr....
+ * ...rssr...
+ * </pre>
+ * Every line after "grid" is one row of bricks; '.' or ' ' is an empty cell, and a short row ends in empty cells.
+ * The bricks of a row share the width of the stage, so a level may have any number of rows and columns.
+ * The class does not depend on any graphics library; colors are kept as RGB values.
+ */
+public class BreakoutLevel implements Constant{
+
+    private final String name;               // Name to show when the level starts
+    private final int rows, columns;         // Size of the grid
+    private final byte[] types;              // Type of every cell, row by row: 1 + the index of its brick, or 0
+    private final byte[] hitPoints;          // Hit points of every cell, row by row, 0 for an empty cell
+    private final int[] colors;              // RGB color of every brick type, by type - 1
+    private final double brickHeight;        // Height of a brick
+    private final double separation;         // Gap between two neighbouring bricks
+    private final double top;                // y coordinate of the first row
+
+    private BreakoutLevel(String name, int rows, int columns, byte[] types, byte[] hitPoints, int[] colors,
+                          double brickHeight, double separation, double top) {
+        this.name = name;
+        this.rows = rows;
+        this.columns = columns;
+        this.types = types;
+        this.hitPoints = hitPoints;
+        this.colors = colors;
+        this.brickHeight = brickHeight;
+        this.separation = separation;
+        this.top = top;
+    }
+
+    /**
+     * Reads a level file.
+     *
+     * @param file The level file.
+     * @return The level.
+     * @throws IOException If the file cannot be read or a line is not valid, with the number of that line.
+     */
+    public static BreakoutLevel load(Path file) throws IOException {
+        String name = file.getFileName().toString();
+        List<Character> symbols = new ArrayList<>();
+        List<Integer> brickHitPoints = new ArrayList<>();
+        List<Integer> colors = new ArrayList<>();
+        double brickHeight = BRICK_HEIGHT;
+        double separation = BRICK_SEP;
+        double top = BRICK_Y_OFFSET;
+        List<String> grid = new ArrayList<>();
+
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            int lineNumber = 0;
+            String line;
+            boolean inGrid = false;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (inGrid) {
+                    grid.add(line);
+                    continue;
+                }
+                int comment = line.indexOf('#');
+                String setting = (comment >= 0 ? line.substring(0, comment) : line).trim();
+                String[] words = setting.split("\\s+");
+                try {
+                    switch (words[0]) {
+                        case "":
+                            break;
+                        case "name":
+                            name = setting.substring(4).trim();
+                            break;
+                        case "brick":
+                            if (words.length != 4 || words[1].length() != 1 || words[1].equals(".")) {
+                                throw new IOException("expected: brick <character> <hit points> <RRGGBB>");
+                            }
+                            int hp = Integer.parseInt(words[2]);
+                            if (hp < 1 || hp > Byte.MAX_VALUE || symbols.size() == Byte.MAX_VALUE) {
+                                throw new IOException("a brick takes 1 to 127 hits, and a level has at most 127 bricks");
+                            }
+                            symbols.add(words[1].charAt(0));
+                            brickHitPoints.add(hp);
+                            colors.add(Integer.parseInt(words[3], 16));
+                            break;
+                        case "height":
+                            brickHeight = Double.parseDouble(words[1]);
+                            break;
+                        case "gap":
+                            separation = Double.parseDouble(words[1]);
+                            break;
+                        case "top":
+                            top = Double.parseDouble(words[1]);
+                            break;
+                        case "grid":
+                            inGrid = true;
+                            break;
+                        default:
+                            throw new IOException("unknown setting " + words[0]);
+                    }
+                } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                    throw new IOException(file + ", line " + lineNumber + ": not a valid " + words[0]);
+                } catch (IOException e) {
+                    throw new IOException(file + ", line " + lineNumber + ": " + e.getMessage());
+                }
+            }
+        }
+
+        // Trailing blank lines are not rows.
+        while (!grid.isEmpty() && grid.get(grid.size() - 1).trim().isEmpty()) {
+            grid.remove(grid.size() - 1);
+        }
+        int columns = 0;
+        for (String row : grid) {
+            columns = Math.max(columns, row.length());
+        }
+        if (grid.isEmpty() || columns == 0) {
+            throw new IOException(file + ": the level has no grid");
+        }
+
+        // Every character maps to its brick type through a table, so a grid of any size is read in one pass.
+        byte[] typeOf = new byte[Character.MAX_VALUE + 1];
+        for (int i = 0; i < symbols.size(); i++) {
+            typeOf[symbols.get(i)] = (byte) (i + 1);
+        }
+        int rows = grid.size();
+        byte[] types = new byte[rows * columns];
+        byte[] hitPoints = new byte[rows * columns];
+        for (int row = 0; row < rows; row++) {
+            String line = grid.get(row);
+            for (int column = 0; column < line.length(); column++) {
+                char c = line.charAt(column);
+                if (c == '.' || c == ' ') {
+                    continue;
+                }
+                byte type = typeOf[c];
+                if (type == 0) {
+                    throw new IOException(file + ": unknown brick '" + c + "' in row " + (row + 1));
+                }
+                types[row * columns + column] = type;
+                hitPoints[row * columns + column] = (byte) (int) brickHitPoints.get(type - 1);
+            }
+        }
+        int[] colorArray = new int[colors.size()];
+        for (int i = 0; i < colorArray.length; i++) {
+            colorArray[i] = colors.get(i);
+        }
+        return new BreakoutLevel(name, rows, columns, types, hitPoints, colorArray, brickHeight, separation, top);
+    }
+
+    /**
+     * Lays the level out on a stage of the given width: the columns share the width, less the gaps between them.
+     *
+     * @param stageWidth The width of the stage.
+     * @return A new grid with all bricks of the level.
+     */
+    public BrickGrid createGrid(double stageWidth) {
+        double brickWidth = (stageWidth - (columns - 1) * separation) / columns;
+        return new BrickGrid(rows, columns, 0, top, brickWidth, brickHeight, separation, types, hitPoints);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the RGB colors of the brick types; type t has the color at index t - 1.
+     */
+    public int[] getColors() {
+        return colors.clone();
+    }
+}
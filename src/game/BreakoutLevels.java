@@ -0,0 +1,143 @@
+package game;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.BiFunction;
+
+/**
+ * The BreakoutLevels class is a sequence of level files that are read only when they are needed.
+ * When a level is taken, the next one is read, laid out and prepared for drawing on a background thread,
+ * so that it is ready by the time the current level is cleared.
+ * What "prepared" means is up to the renderer: BreakoutWindow paints the bricks of the next level into its image.
+ *
+ * @param <T> The type of what the renderer prepares for a level.
+ */
+public class BreakoutLevels<T> implements AutoCloseable{
+
+    private final List<Path> files;                                   // Level files, in playing order
+    private final double stageWidth;                                  // Width of the stage the grids are laid out on
+    private final BiFunction<BreakoutLevel, BrickGrid, T> prepare;    // Prepares a laid out level for drawing
+    private final ExecutorService loader = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "level-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<Integer, Future<Prepared<T>>> prefetched = new HashMap<>(); // Levels read ahead, by index
+
+    /**
+     * Creates a sequence of levels. Nothing is read yet.
+     *
+     * @param files      The level files, in playing order.
+     * @param stageWidth The width of the stage.
+     * @param prepare    Prepares a level for drawing; it runs on a background thread.
+     */
+    public BreakoutLevels(List<Path> files, double stageWidth, BiFunction<BreakoutLevel, BrickGrid, T> prepare) {
+        this.files = new ArrayList<>(files);
+        this.stageWidth = stageWidth;
+        this.prepare = prepare;
+    }
+
+    /**
+     * Lists the files ending in ".level" in a directory, sorted by name.
+     *
+     * @param directory The directory.
+     * @return The level files.
+     * @throws IOException If the directory cannot be read.
+     */
+    public static List<Path> list(Path directory) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.level")) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        Collections.sort(files);
+        return files;
+    }
+
+    public int size() {
+        return files.size();
+    }
+
+    /**
+     * Returns a level ready to be played, and starts preparing the one after it.
+     * If the level was prefetched, this only waits for the background work that is left.
+     *
+     * @param index The index of the level.
+     * @return The level with a fresh grid and what was prepared for it.
+     * @throws IOException If the level file cannot be read.
+     */
+    public Prepared<T> get(int index) throws IOException {
+        Future<Prepared<T>> future = prefetched.remove(index);
+        Prepared<T> level;
+        if (future == null) {
+            level = load(index);
+        } else {
+            try {
+                level = future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while loading " + files.get(index));
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof UncheckedIOException) {
+                    throw ((UncheckedIOException) e.getCause()).getCause();
+                }
+                throw new IOException("Cannot load " + files.get(index), e.getCause());
+            }
+        }
+        prefetch(index + 1);
+        return level;
+    }
+
+    /**
+     * Starts reading and preparing a level on the background thread, if it exists and is not started yet.
+     *
+     * @param index The index of the level.
+     */
+    public void prefetch(int index) {
+        if (index < files.size() && !prefetched.containsKey(index)) {
+            prefetched.put(index, loader.submit(() -> {
+                try {
+                    return load(index);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        }
+    }
+
+    private Prepared<T> load(int index) throws IOException {
+        BreakoutLevel level = BreakoutLevel.load(files.get(index));
+        BrickGrid grid = level.createGrid(stageWidth);
+        return new Prepared<>(level, grid, prepare.apply(level, grid));
+    }
+
+    /**
+     * Stops the background thread; levels that are being prefetched are abandoned.
+     */
+    @Override
+    public void close() {
+        loader.shutdownNow();
+    }
+
+    /**
+     * A level that is read, laid out on the stage and prepared for drawing.
+     */
+    public static class Prepared<T>{
+        public final BreakoutLevel level;
+        public final BrickGrid grid;
+        public final T prepared;
+
+        Prepared(BreakoutLevel level, BrickGrid grid, T prepared) {
+            this.level = level;
+            this.grid = grid;
+            this.prepared = prepared;
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package game;
+
+import java.awt.*;
+import java.awt.image.BufferStrategy;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The BreakoutRenderer class draws a BreakoutSimulation with plain Java2D onto a Canvas, by active rendering
+ * through a BufferStrategy instead of repaint requests.
+ * The bricks are painted once into an off-screen BrickLayer; when a brick is hit, only its rectangle of that image
+ * is painted again. Every frame copies the image to the back buffer and draws the balls, power-ups and paddle on top.
+ * The layer of the next level can be painted on another thread with prepareBricks and swapped in with setBrickLayer.
+ * Ball colors come from a palette that is made once, so breaking a brick allocates nothing.
+ */
+public class BreakoutRenderer implements Constant, BreakoutSimulation.Listener{
+
+    /**
+     * Colors a ball takes after it breaks a brick, in turn.
+     */
+    static final Color[] BALL_COLORS = createPalette(64);
+
+    /**
+     * Colors of the brick rows, which alternate every two rows; they are the brick types of BrickGrid.forStage.
+     */
+    static final Color[] BRICK_COLORS = {Color.RED, Color.ORANGE, Color.YELLOW, Color.GREEN, Color.CYAN};
+
+    private static final int SHADES = 4;    // Bricks with more hit points are drawn darker, up to this many
+
+    private static final Color BACKGROUND = Color.WHITE;
+
+    private final Canvas canvas;                            // The component that is drawn on
+    private final BreakoutSimulation simulation;            // The game that is drawn
+    private final BufferStrategy strategy;                  // Back buffers of the canvas
+    private BrickLayer bricks;                              // The background with all bricks still on the stage
+    private int[] dirty = new int[64];                      // Cells of the bricks hit since the last frame
+    private int dirtyCount;                                 // Number of cells in dirty
+    private final int[] ballColors = new int[MAX_BALLS];   // Palette index of every ball, by index in the ball store
+    private final TextLayoutService textLayout = new TextLayoutService("Arial"); // Font sizes of the messages
+    private final Font metricsFont = new Font("Monospaced", Font.PLAIN, 10);
+
+    /**
+     * Creates a renderer that draws the simulation onto the canvas, which must already be displayable.
+     *
+     * @param canvas     The canvas to draw on.
+     * @param simulation The game to draw.
+     */
+    public BreakoutRenderer(Canvas canvas, BreakoutSimulation simulation) {
+        this.canvas = canvas;
+        this.simulation = simulation;
+        canvas.setIgnoreRepaint(true);
+        canvas.createBufferStrategy(2);
+        this.strategy = canvas.getBufferStrategy();
+        int[] colors = new int[BRICK_COLORS.length];
+        for (int i = 0; i < colors.length; i++) {
+            colors[i] = BRICK_COLORS[i].getRGB();
+        }
+        this.bricks = prepareBricks(simulation.getBricks(), colors, simulation.getWidth(), simulation.getHeight(),
+                canvas.getGraphicsConfiguration());
+    }
+
+    /**
+     * Creates a palette of bright colors from a fixed seed.
+     */
+    private static Color[] createPalette(int size) {
+        Random random = new Random(size);
+        Color[] colors = new Color[size];
+        for (int i = 0; i < size; i++) {
+            colors[i] = Color.getHSBColor(random.nextFloat(), 0.6f + 0.4f * random.nextFloat(), 0.8f);
+        }
+        return colors;
+    }
+
+    /**
+     * Paints a new brick layer for a grid: the background and every brick that is still on the stage,
+     * in the color of its type and darker the more hits it still takes.
+     * It touches no state of a renderer, so the layer of the next level can be painted on a background thread.
+     *
+     * @param grid          The bricks.
+     * @param colors        The RGB color of every brick type, by type - 1.
+     * @param width         The width of the stage.
+     * @param height        The height of the stage.
+     * @param configuration The configuration of the screen the layer is drawn on, or null.
+     * @return The painted layer.
+     */
+    public static BrickLayer prepareBricks(BrickGrid grid, int[] colors, double width, double height,
+                                           GraphicsConfiguration configuration) {
+        BrickLayer layer = new BrickLayer(colors, (int) width, (int) height, configuration);
+        Graphics2D g = layer.image.createGraphics();
+        g.setColor(BACKGROUND);
+        g.fillRect(0, 0, layer.image.getWidth(), layer.image.getHeight());
+        for (int row = 0; row < grid.getRows(); row++) {
+            for (int column = 0; column < grid.getColumns(); column++) {
+                if (grid.isAlive(row, column)) {
+                    layer.paintBrick(g, grid, row, column);
+                }
+            }
+        }
+        g.dispose();
+        return layer;
+    }
+
+    /**
+     * Replaces the brick layer, after the simulation has loaded a new level.
+     *
+     * @param bricks The layer painted from the grid of the new level.
+     */
+    public void setBrickLayer(BrickLayer bricks) {
+        this.bricks = bricks;
+        dirtyCount = 0;
+        Arrays.fill(ballColors, 0);
+    }
+
+    /**
+     * Remembers the cell of a broken brick, to be painted over in the next frame,
+     * and gives the ball that broke it the next palette color.
+     */
+    @Override
+    public void brickRemoved(int row, int column, int ball) {
+        brickDamaged(row, column, ball);
+    }
+
+    /**
+     * Remembers the cell of a damaged brick, to be painted again in the next frame,
+     * and gives the ball that hit it the next palette color.
+     */
+    @Override
+    public void brickDamaged(int row, int column, int ball) {
+        if (dirtyCount == dirty.length) {
+            dirty = Arrays.copyOf(dirty, dirtyCount * 2);
+        }
+        dirty[dirtyCount++] = simulation.getBricks().index(row, column);
+        ballColors[ball] = (ballColors[ball] + 1) % BALL_COLORS.length;
+    }
+
+    /**
+     * Keeps every ball its color when a ball is removed: the color of the last ball moves with it to the
+     * index of the removed one, and the freed index starts at the first palette color again.
+     */
+    @Override
+    public void ballRemoved(int ball) {
+        int last = simulation.getBalls().size() - 1;
+        ballColors[ball] = ballColors[last];
+        ballColors[last] = 0;
+    }
+
+    /**
+     * Draws one frame and shows it.
+     *
+     * @param alpha   How far the moving entities are between their previous and current positions, from 0 to 1.
+     * @param message A message to show in the center of the stage, or null.
+     * @param metrics A line of frame metrics to show at the bottom, or null.
+     */
+    public void render(double alpha, String message, String metrics) {
+        // Only the rectangles of the bricks that were hit change in the brick layer.
+        if (dirtyCount > 0) {
+            BrickGrid grid = simulation.getBricks();
+            Graphics2D g = bricks.image.createGraphics();
+            for (int i = 0; i < dirtyCount; i++) {
+                int row = dirty[i] / grid.getColumns();
+                int column = dirty[i] % grid.getColumns();
+                g.setColor(BACKGROUND);
+                g.fill(bricks.bounds(grid, row, column));
+                if (grid.isAlive(row, column)) {
+                    bricks.paintBrick(g, grid, row, column);
+                }
+            }
+            g.dispose();
+            dirtyCount = 0;
+        }
+
+        do {
+            do {
+                Graphics2D g = (Graphics2D) strategy.getDrawGraphics();
+                try {
+                    drawFrame(g, alpha, message, metrics);
+                } finally {
+                    g.dispose();
+                }
+            } while (strategy.contentsRestored());
+            strategy.show();
+        } while (strategy.contentsLost());
+        Toolkit.getDefaultToolkit().sync();
+    }
+
+    private void drawFrame(Graphics2D g, double alpha, String message, String metrics) {
+        g.drawImage(bricks.image, 0, 0, null);
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+        EntityStore powerUps = simulation.getPowerUps();
+        g.setColor(Color.MAGENTA);
+        for (int i = 0; i < powerUps.size(); i++) {
+            g.fillRect((int) powerUps.getX(i, alpha), (int) powerUps.getY(i, alpha), POWER_UP_SIZE, POWER_UP_SIZE);
+        }
+
+        EntityStore balls = simulation.getBalls();
+        for (int i = 0; i < balls.size(); i++) {
+            g.setColor(BALL_COLORS[ballColors[i]]);
+            g.fillOval((int) Math.round(balls.getX(i, alpha)), (int) Math.round(balls.getY(i, alpha)),
+                    2 * BALL_RADIUS, 2 * BALL_RADIUS);
+        }
+
+        g.setColor(Color.BLACK);
+        g.fillRect((int) simulation.getPaddleX(), (int) simulation.getPaddleY(), PADDLE_WIDTH, PADDLE_HEIGHT);
+
+        if (message != null) {
+            TextLayoutService.Layout layout = textLayout.layout(message, canvas.getWidth(), canvas.getHeight());
+            g.setFont(layout.font);
+            g.drawString(message, (float) layout.centerX(canvas.getWidth()), (float) layout.baselineY(canvas.getHeight()));
+        }
+        if (metrics != null) {
+            g.setFont(metricsFont);
+            g.drawString(metrics, 4, canvas.getHeight() - 4);
+        }
+    }
+
+    /**
+     * The image with the bricks of one level, and the colors of its brick types.
+     */
+    public static class BrickLayer{
+        private final BufferedImage image;          // The background with the bricks still on the stage
+        private final Color[][] shades;             // Color of every brick type, by type - 1 and hit points - 1
+        private final Rectangle cell = new Rectangle(); // Rectangle of the brick being painted
+
+        BrickLayer(int[] colors, int width, int height, GraphicsConfiguration configuration) {
+            this.image = configuration != null
+                    ? configuration.createCompatibleImage(width, height, Transparency.OPAQUE)
+                    : new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            this.shades = new Color[colors.length][SHADES];
+            for (int type = 0; type < colors.length; type++) {
+                Color color = new Color(colors[type]);
+                for (int shade = 0; shade < SHADES; shade++) {
+                    shades[type][shade] = color;
+                    color = color.darker();
+                }
+            }
+        }
+
+        /**
+         * Returns the pixels of a brick. Edges are rounded down, so bricks without a gap do not share pixels.
+         */
+        private Rectangle bounds(BrickGrid grid, int row, int column) {
+            int x = (int) Math.floor(grid.brickX(column));
+            int y = (int) Math.floor(grid.brickY(row));
+            cell.setBounds(x, y, (int) Math.floor(grid.brickX(column) + grid.getBrickWidth()) - x,
+                    (int) Math.floor(grid.brickY(row) + grid.getBrickHeight()) - y);
+            return cell;
+        }
+
+        private void paintBrick(Graphics2D g, BrickGrid grid, int row, int column) {
+            Color[] typeShades = shades[(grid.getType(row, column) - 1) % shades.length];
+            g.setColor(typeShades[Math.min(grid.getHitPoints(row, column), SHADES) - 1]);
+            g.fill(bounds(grid, row, column));
+        }
+    }
+}
@@ -0,0 +1,406 @@
+package game;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * The BreakoutReplay class records the inputs of a breakout game to a compact binary file and plays them back.
+ * A BreakoutSimulation only depends on its seed and on its inputs: the paddle position before every step,
+ * the rounds started and the balls added in stress mode. A replay stores exactly these, so playing it back
+ * gives the same game, which is how a reported round is reproduced and how physics changes are checked.
+ * <p>
+ * The file starts with a header: the magic number, the format version, the seed and the stage size.
+ * Then follows a stream of variable-length records; the two low bits of the first number tell the kind:
+ * - TICK: one step, after the paddle moved by the zigzag-encoded delta in the upper bits.
+ * - HOLD: the upper bits steps in a row, with the paddle where it was.
+ * - EVENT: a round start; a new level, followed by its grid; or the end of the game, followed by
+ * the checksum of the final state. A grid is its size, its geometry as doubles and its cells run-length encoded.
+ * - FILL: fillBalls with the count in the upper bits.
+ * Paddle positions are stored in 1/PADDLE_UNITS of a pixel; a simulation that is recorded rounds its paddle
+ * to that grid, so the recorded position is exactly the one that was played.
+ * <p>
+ * Usage: java game.BreakoutReplay replayFileOrDirectory...
+ * <br>
+ * Plays every file, and every .replay file of a directory, without rendering, as fast as possible, and exits
+ * with 1 if a final state differs. The build plays the replays in game/replays this way, so a change of the
+ * physics shows up as a failed build; after an intended change, record them again with BreakoutBatch record.
+ */
+public class BreakoutReplay implements Constant{
+
+    static final int MAGIC = 0x424B5250;    // "BKRP"
+    static final int VERSION = 1;
+    static final int PADDLE_UNITS = 16;      // Paddle positions are stored in 1/16 pixel
+
+    private static final int TICK = 0, HOLD = 1, EVENT = 2, FILL = 3;
+    private static final int ROUND_STARTED = 0, GAME_ENDED = 1, LEVEL_LOADED = 2;
+
+    /**
+     * Rounds a paddle position to the grid in which replays store it.
+     */
+    static double quantize(double paddleX) {
+        return Math.round(paddleX * PADDLE_UNITS) / (double) PADDLE_UNITS;
+    }
+
+    /**
+     * Writes the inputs of one simulation to a replay file, through its own buffer.
+     * A write error is reported once on System.err, after which recording stops and the game goes on.
+     */
+    public static class Recorder implements Closeable{
+        private final OutputStream out;
+        private final byte[] buffer = new byte[8192];
+        private int length;                  // Bytes in the buffer
+        private int paddle;                  // Last recorded paddle position, in PADDLE_UNITS
+        private int held;                    // Steps since the last record in which the paddle did not move
+        private boolean failed;              // Whether a write has failed
+
+        /**
+         * Creates the replay file and writes its header from the seed and stage of the simulation.
+         * The simulation must not have started yet; call setRecorder on it with this recorder.
+         *
+         * @param file       The replay file, which is overwritten.
+         * @param simulation The simulation that will be recorded.
+         * @throws IOException If the file cannot be created.
+         */
+        public Recorder(Path file, BreakoutSimulation simulation) throws IOException {
+            this.out = Files.newOutputStream(file);
+            DataOutputStream header = new DataOutputStream(out);
+            header.writeInt(MAGIC);
+            header.writeByte(VERSION);
+            header.writeLong(simulation.getSeed());
+            header.writeDouble(simulation.getWidth());
+            header.writeDouble(simulation.getHeight());
+            paddle = (int) Math.round(simulation.getPaddleX() * PADDLE_UNITS);
+        }
+
+        /**
+         * Records one simulation step with the paddle at the given position.
+         */
+        void tick(double paddleX) {
+            int position = (int) Math.round(paddleX * PADDLE_UNITS);
+            if (position == paddle) {
+                held++;
+                return;
+            }
+            flushHeld();
+            int delta = position - paddle;
+            paddle = position;
+            writeRecord(TICK, (delta << 1) ^ (delta >> 31));
+        }
+
+        /**
+         * Records the start of a round and flushes the buffer, so that a crash loses at most one round.
+         */
+        void roundStarted() {
+            flushHeld();
+            writeRecord(EVENT, ROUND_STARTED);
+            flush();
+        }
+
+        /**
+         * Records a new level with all of its bricks, as runs of cells with the same type and hit points.
+         */
+        void levelLoaded(BrickGrid bricks) {
+            flushHeld();
+            writeRecord(EVENT, LEVEL_LOADED);
+            writeVarint(bricks.getRows());
+            writeVarint(bricks.getColumns());
+            writeLong(Double.doubleToLongBits(bricks.getLeft()));
+            writeLong(Double.doubleToLongBits(bricks.getTop()));
+            writeLong(Double.doubleToLongBits(bricks.getBrickWidth()));
+            writeLong(Double.doubleToLongBits(bricks.getBrickHeight()));
+            writeLong(Double.doubleToLongBits(bricks.getSeparation()));
+            int run = 0;
+            int previous = -1;
+            for (int row = 0; row < bricks.getRows(); row++) {
+                for (int column = 0; column < bricks.getColumns(); column++) {
+                    int cell = bricks.getType(row, column) << 8 | bricks.getHitPoints(row, column);
+                    if (cell != previous && run > 0) {
+                        writeVarint(previous);
+                        writeVarint(run);
+                        run = 0;
+                    }
+                    previous = cell;
+                    run++;
+                }
+            }
+            writeVarint(previous);
+            writeVarint(run);
+        }
+
+        /**
+         * Records a call of fillBalls.
+         */
+        void ballsFilled(int count) {
+            flushHeld();
+            writeRecord(FILL, count);
+        }
+
+        /**
+         * Ends the replay with the checksum of the final state and closes the file.
+         *
+         * @param checksum The checksum of the simulation after its last step.
+         */
+        public void finish(long checksum) {
+            flushHeld();
+            writeRecord(EVENT, GAME_ENDED);
+            writeLong(checksum);
+            close();
+        }
+
+        private void writeLong(long value) {
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                writeByte((int) (value >>> shift));
+            }
+        }
+
+        private void flushHeld() {
+            if (held > 0) {
+                writeRecord(HOLD, held);
+                held = 0;
+            }
+        }
+
+        /**
+         * Writes the kind in the two low bits and the value above them as an unsigned varint.
+         */
+        private void writeRecord(int kind, int value) {
+            writeVarint(((long) value << 2) | kind);
+        }
+
+        private void writeVarint(long v) {
+            while ((v & ~0x7FL) != 0) {
+                writeByte((int) (v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            writeByte((int) v);
+        }
+
+        private void writeByte(int b) {
+            if (length == buffer.length) {
+                flush();
+            }
+            buffer[length++] = (byte) b;
+        }
+
+        private void flush() {
+            if (!failed && length > 0) {
+                try {
+                    out.write(buffer, 0, length);
+                    out.flush();
+                } catch (IOException e) {
+                    failed = true;
+                    System.err.println("Recording the replay failed: " + e.getMessage());
+                }
+            }
+            length = 0;
+        }
+
+        /**
+         * Flushes what was recorded and closes the file, without an end record if finish was not called.
+         */
+        @Override
+        public void close() {
+            flushHeld();
+            flush();
+            try {
+                out.close();
+            } catch (IOException e) {
+                System.err.println("Closing the replay failed: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * The outcome of playing a replay back.
+     */
+    public static class Result{
+        final BreakoutSimulation simulation;  // The simulation after the last recorded step
+        final boolean complete;               // Whether the replay ended with a checksum
+        final long expected;                  // The recorded checksum, if complete
+        final long actual;                    // The checksum of the simulation
+
+        Result(BreakoutSimulation simulation, boolean complete, long expected) {
+            this.simulation = simulation;
+            this.complete = complete;
+            this.expected = expected;
+            this.actual = simulation.checksum();
+        }
+
+        public BreakoutSimulation getSimulation() {
+            return simulation;
+        }
+
+        /**
+         * Returns true if the replay is complete and the final state matches the recorded one.
+         */
+        public boolean matches() {
+            return complete && expected == actual;
+        }
+    }
+
+    /**
+     * Plays a replay back without rendering.
+     *
+     * @param file The replay file.
+     * @return The final simulation and whether it matches the recording.
+     * @throws IOException If the file cannot be read or is not a replay.
+     */
+    public static Result play(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(file + " is not a breakout replay");
+            }
+            int version = in.readUnsignedByte();
+            if (version != VERSION) {
+                throw new IOException(file + " has replay version " + version + ", expected " + VERSION);
+            }
+            long seed = in.readLong();
+            double width = in.readDouble();
+            double height = in.readDouble();
+            BreakoutSimulation simulation = new BreakoutSimulation(width, height, seed);
+            int paddle = (int) Math.round(simulation.getPaddleX() * PADDLE_UNITS);
+
+            long v;
+            while ((v = readVarint(in)) >= 0) {
+                int kind = (int) (v & 3);
+                long value = v >>> 2;
+                switch (kind) {
+                    case TICK:
+                        paddle += (int) (value >>> 1) ^ -(int) (value & 1);
+                        simulation.setPaddleX(paddle / (double) PADDLE_UNITS);
+                        simulation.step();
+                        break;
+                    case HOLD:
+                        for (long i = 0; i < value; i++) {
+                            simulation.step();
+                        }
+                        break;
+                    case FILL:
+                        simulation.fillBalls((int) value);
+                        break;
+                    default:
+                        if (value == ROUND_STARTED) {
+                            simulation.startRound();
+                        } else if (value == GAME_ENDED) {
+                            return new Result(simulation, true, in.readLong());
+                        } else if (value == LEVEL_LOADED) {
+                            simulation.loadLevel(readGrid(in));
+                        } else {
+                            throw new IOException(file + " has an unknown event " + value);
+                        }
+                }
+            }
+            return new Result(simulation, false, 0);
+        }
+    }
+
+    /**
+     * Reads a grid written by Recorder.levelLoaded.
+     */
+    private static BrickGrid readGrid(DataInputStream in) throws IOException {
+        int rows = (int) readVarint(in);
+        int columns = (int) readVarint(in);
+        double left = in.readDouble();
+        double top = in.readDouble();
+        double brickWidth = in.readDouble();
+        double brickHeight = in.readDouble();
+        double separation = in.readDouble();
+        byte[] types = new byte[rows * columns];
+        byte[] hitPoints = new byte[rows * columns];
+        for (int i = 0; i < types.length; ) {
+            int cell = (int) readVarint(in);
+            int run = (int) readVarint(in);
+            if (cell < 0 || run <= 0 || i + run > types.length) {
+                throw new IOException("The replay has a broken level grid");
+            }
+            Arrays.fill(types, i, i + run, (byte) (cell >> 8));
+            Arrays.fill(hitPoints, i, i + run, (byte) cell);
+            i += run;
+        }
+        return new BrickGrid(rows, columns, left, top, brickWidth, brickHeight, separation, types, hitPoints);
+    }
+
+    /**
+     * Reads an unsigned varint, or returns -1 at the end of the stream.
+     */
+    private static long readVarint(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                if (shift == 0) {
+                    return -1;
+                }
+                throw new EOFException("The replay ends in the middle of a record");
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Returns the given files, with every directory replaced by its .replay files in name order.
+     */
+    private static List<Path> replayFiles(String[] names) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (String name : names) {
+            Path path = Paths.get(name);
+            if (!Files.isDirectory(path)) {
+                files.add(path);
+                continue;
+            }
+            try (Stream<Path> listed = Files.list(path)) {
+                listed.filter(file -> file.getFileName().toString().endsWith(".replay")).sorted().forEach(files::add);
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Plays the given replays back and prints whether their final states match.
+     */
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.err.println("Usage: java game.BreakoutReplay replayFileOrDirectory...");
+            System.exit(2);
+        }
+        List<Path> files;
+        try {
+            files = replayFiles(args);
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+            return;
+        }
+        if (files.isEmpty()) {
+            System.err.println("No replays found");
+            System.exit(1);
+        }
+        boolean allMatch = true;
+        for (Path name : files) {
+            try {
+                long start = System.nanoTime();
+                Result result = play(name);
+                double seconds = (System.nanoTime() - start) / 1e9;
+                long ticks = result.simulation.getTicks();
+                String verdict = !result.complete ? "INCOMPLETE" : result.matches() ? "OK" : "MISMATCH";
+                System.out.printf("%s: %s, %d ticks, %d bricks left, %.3f s (%.0fx real time)%n", name, verdict,
+                        ticks, result.simulation.getBricks().getAliveCount(), seconds,
+                        ticks * TICK_TIME / 1000.0 / Math.max(seconds, 1e-9));
+                allMatch &= result.matches();
+            } catch (IOException e) {
+                System.err.println(name + ": " + e.getMessage());
+                allMatch = false;
+            }
+        }
+        System.exit(allMatch ? 0 : 1);
+    }
+}
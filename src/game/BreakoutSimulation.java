@@ -0,0 +1,443 @@
+package game;
+
+import java.util.Random;
+
+/**
+ * The BreakoutSimulation class holds the rules of the breakout game without any graphics:
+ * the bricks, the balls with their velocities, the falling power-ups, the paddle and the turns that are left.
+ * Balls and power-ups live in EntityStores, and every step is one pass over their arrays.
+ * A broken brick may drop a multi-ball power-up; catching it with the paddle splits every ball in play.
+ * It advances in fixed steps, and all randomness comes from a generator with a known seed,
+ * so the same seed and the same paddle moves always play the same game.
+ * BreakoutGame and BreakoutWindow draw a simulation on the screen; BreakoutBatch plays many of them without a screen.
+ * A BreakoutReplay.Recorder can be attached to record those inputs, and BreakoutReplay plays them back.
+ */
+public class BreakoutSimulation implements Constant{
+
+    /**
+     * The states a round can be in after a simulation step.
+     */
+    public enum State{
+        WAITING, PLAYING, MISSED, CLEARED
+    }
+
+    /**
+     * Receives the events of the simulation that a renderer has to show.
+     */
+    public interface Listener{
+        /**
+         * Called when a ball has broken the brick in the given cell of the brick grid.
+         *
+         * @param ball The index of the ball in the ball store.
+         */
+        void brickRemoved(int row, int column, int ball);
+
+        /**
+         * Called when a ball has hit a brick that takes more hits, so it is still there with fewer hit points.
+         *
+         * @param ball The index of the ball in the ball store.
+         */
+        default void brickDamaged(int row, int column, int ball) {
+        }
+
+        /**
+         * Called when a ball has left the stage, just before it is removed from the ball store,
+         * where the last ball then takes its index.
+         *
+         * @param ball The index of the ball in the ball store.
+         */
+        default void ballRemoved(int ball) {
+        }
+    }
+
+    /**
+     * The kind of power-up that splits every ball in play.
+     */
+    public static final int MULTI_BALL = 0;
+
+    private static final double[] SPLIT_COS = new double[MULTI_BALL_SPLIT + 1]; // Turn of the k-th extra ball of a split
+    private static final double[] SPLIT_SIN = new double[MULTI_BALL_SPLIT + 1];
+
+    // StrictMath gives the same turns on every JVM, so that a replay plays back the same everywhere.
+    static {
+        for (int k = 1; k <= MULTI_BALL_SPLIT; k++) {
+            double angle = (k % 2 == 0 ? 1 : -1) * 0.35 * ((k + 1) / 2);
+            SPLIT_COS[k] = StrictMath.cos(angle);
+            SPLIT_SIN[k] = StrictMath.sin(angle);
+        }
+    }
+
+    private final double width, height;                // Size of the stage
+    private final long seed;                            // Seed of the random generator
+    private final Random random;                        // The only source of randomness of the game
+    private BrickGrid bricks;                           // Bricks still on the stage
+    private final EntityStore balls = new EntityStore(16);    // Balls in play, by the top left corner of their box
+    private final EntityStore powerUps = new EntityStore(16); // Falling power-ups, by their top left corner
+    private double paddleX;                             // Left edge of the paddle
+    private int turnsLeft = NUM_TURNS;                  // Number of rounds the player may still start
+    private int paddleBounces;                          // Number of times the ball bounced off the paddle
+    private long ticks;                                 // Number of steps taken
+    private State state = State.WAITING;
+    private Listener listener = (row, column, ball) -> {
+    };
+    private BreakoutReplay.Recorder recorder;           // Receives the inputs of the game, or null
+
+    /**
+     * Creates a game on a stage of the given size, with the bricks laid out like drawBrickLayout does.
+     *
+     * @param width  The width of the stage.
+     * @param height The height of the stage.
+     * @param seed   The seed of the random generator.
+     */
+    public BreakoutSimulation(double width, double height, long seed) {
+        this.width = width;
+        this.height = height;
+        this.seed = seed;
+        this.random = new Random(seed);
+        this.bricks = BrickGrid.forStage(width);
+        this.paddleX = (width - PADDLE_WIDTH) / 2;
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Records every input of the game from now on. Paddle positions are rounded to the grid of the replay format.
+     *
+     * @param recorder The recorder, or null to stop recording.
+     */
+    public void setRecorder(BreakoutReplay.Recorder recorder) {
+        this.recorder = recorder;
+    }
+
+    /**
+     * Replaces the bricks with those of a new level. The balls and power-ups are gone,
+     * and the next round is started by startRound; the turns that are left stay.
+     *
+     * @param bricks The grid of the level, laid out for this stage.
+     */
+    public void loadLevel(BrickGrid bricks) {
+        if (recorder != null) {
+            recorder.levelLoaded(bricks);
+        }
+        this.bricks = bricks;
+        balls.clear();
+        powerUps.clear();
+        state = State.WAITING;
+    }
+
+    /**
+     * Starts a new round: one ball is put in the center of the stage with a random speed,
+     * and the power-ups of the previous round are gone.
+     */
+    public void startRound() {
+        if (recorder != null) {
+            recorder.roundStarted();
+        }
+        balls.clear();
+        powerUps.clear();
+        addBall();
+        turnsLeft--;
+        state = State.PLAYING;
+    }
+
+    /**
+     * Adds a ball in the center of the stage with a random speed.
+     * The horizontal velocity (vx) is randomly chosen between 1.0 and 3.0, and its sign may be negated randomly.
+     * The vertical velocity (vy) is set to a constant value (BALL_SPEED).
+     */
+    private void addBall() {
+        double vx = 1.0 + 2.0 * random.nextDouble();
+        if (random.nextBoolean()) {
+            vx = -vx;
+        }
+        balls.add(width / 2 - BALL_RADIUS, height / 2 - BALL_RADIUS, vx, BALL_SPEED, 0);
+    }
+
+    /**
+     * Adds balls until the given number is in play, for the stress mode.
+     *
+     * @param count The number of balls to have in play, at most MAX_BALLS.
+     */
+    public void fillBalls(int count) {
+        if (recorder != null && balls.size < Math.min(count, MAX_BALLS)) {
+            recorder.ballsFilled(count);
+        }
+        while (balls.size < Math.min(count, MAX_BALLS)) {
+            addBall();
+        }
+    }
+
+    /**
+     * Moves the paddle so that its left edge is at the given x coordinate, keeping it on the stage.
+     * While recording, the position is rounded to the replay grid first and then clamped to the grid positions
+     * on the stage, so that playback sets exactly the same position.
+     *
+     * @param x The desired left edge of the paddle.
+     */
+    public void setPaddleX(double x) {
+        double maxX = width - PADDLE_WIDTH;
+        if (recorder != null) {
+            x = BreakoutReplay.quantize(x);
+            maxX = Math.floor(maxX * BreakoutReplay.PADDLE_UNITS) / BreakoutReplay.PADDLE_UNITS;
+        }
+        paddleX = Math.max(0, Math.min(x, maxX));
+    }
+
+    /**
+     * Advances the round by one step.
+     * - Moves every ball (see stepBall); balls that missed the paddle leave the game.
+     * - Moves the power-ups; one that the paddle catches takes effect.
+     * - The round is lost when no ball is left, and won when no brick is left.
+     *
+     * @return The state of the round after the step.
+     */
+    public State step() {
+        if (state != State.PLAYING) {
+            return state;
+        }
+        if (recorder != null) {
+            recorder.tick(paddleX);
+        }
+        ticks++;
+        for (int i = 0; i < balls.size; ) {
+            if (stepBall(i)) {
+                i++;
+            } else {
+                listener.ballRemoved(i);
+                balls.remove(i);
+            }
+        }
+        stepPowerUps();
+        if (balls.size == 0) {
+            state = State.MISSED;
+        } else if (bricks.getAliveCount() == 0) {
+            state = State.CLEARED;
+        }
+        return state;
+    }
+
+    /**
+     * Advances one ball by one step.
+     * - Handles collisions with the bricks and the paddle using the collideObject method.
+     * - Handles collisions with the walls and the ceiling using the collideWithStageLimits method.
+     * - Checks if the ball has missed the paddle.
+     * - Moves the ball based on its velocity (vx, vy).
+     *
+     * @param i The index of the ball.
+     * @return False if the ball has missed the paddle and has to be removed.
+     */
+    private boolean stepBall(int i) {
+        collideObject(i);
+        collideWithStageLimits(i);
+        if (balls.y[i] + 2 * BALL_RADIUS >= height) {
+            return false;
+        }
+        balls.previousX[i] = balls.x[i];
+        balls.previousY[i] = balls.y[i];
+        balls.x[i] += balls.vx[i];
+        balls.y[i] += balls.vy[i];
+        return true;
+    }
+
+    /**
+     * Sweeps a ball through the brick grid; a brick that is hit loses a hit point, and when it has none left
+     * it is removed and may drop a power-up. The ball bounces off the side that was hit.
+     * Otherwise the ball bounces off the paddle if it touches it while moving downward.
+     */
+    private void collideObject(int i) {
+        BrickGrid.Hit hit = bricks.sweep(balls.x[i] + BALL_RADIUS, balls.y[i] + BALL_RADIUS, BALL_RADIUS,
+                balls.vx[i], balls.vy[i]);
+        if (hit != null) {
+            boolean broken = bricks.hit(hit.row, hit.column);
+            if (hit.isVertical()) {
+                balls.vy[i] = -balls.vy[i];
+            } else {
+                balls.vx[i] = -balls.vx[i];
+            }
+            if (!broken) {
+                listener.brickDamaged(hit.row, hit.column, i);
+                return;
+            }
+            if (random.nextDouble() < POWER_UP_CHANCE) {
+                powerUps.add(bricks.brickX(hit.column) + (bricks.getBrickWidth() - POWER_UP_SIZE) / 2,
+                        bricks.brickY(hit.row), 0, POWER_UP_SPEED, MULTI_BALL);
+            }
+            listener.brickRemoved(hit.row, hit.column, i);
+        } else if (balls.vy[i] > 0 && isTouchingPaddle(balls.x[i] + BALL_RADIUS, balls.y[i] + BALL_RADIUS)) {
+            balls.vy[i] = -balls.vy[i];
+            paddleBounces++;
+        }
+    }
+
+    /**
+     * Checks if a ball overlaps the paddle.
+     *
+     * @param centerX The x coordinate of the center of the ball.
+     * @param centerY The y coordinate of the center of the ball.
+     * @return True if the circle of the ball touches the paddle rectangle, otherwise false.
+     */
+    private boolean isTouchingPaddle(double centerX, double centerY) {
+        double paddleY = getPaddleY();
+        double nearestX = Math.max(paddleX, Math.min(centerX, paddleX + PADDLE_WIDTH));
+        double nearestY = Math.max(paddleY, Math.min(centerY, paddleY + PADDLE_HEIGHT));
+        double dx = centerX - nearestX;
+        double dy = centerY - nearestY;
+        return dx * dx + dy * dy <= BALL_RADIUS * BALL_RADIUS;
+    }
+
+    /**
+     * Reverses the vertical velocity of a ball at the ceiling and its horizontal velocity at the walls.
+     */
+    private void collideWithStageLimits(int i) {
+        if (balls.y[i] <= 0) {
+            balls.vy[i] = -balls.vy[i];
+        }
+        if (balls.x[i] + 2 * BALL_RADIUS >= width || balls.x[i] <= 0) {
+            balls.vx[i] = -balls.vx[i];
+        }
+    }
+
+    /**
+     * Lets the power-ups fall; those that reach the paddle take effect and those that pass it are lost.
+     */
+    private void stepPowerUps() {
+        double paddleY = getPaddleY();
+        for (int i = 0; i < powerUps.size; ) {
+            powerUps.previousX[i] = powerUps.x[i];
+            powerUps.previousY[i] = powerUps.y[i];
+            powerUps.y[i] += powerUps.vy[i];
+            double bottom = powerUps.y[i] + POWER_UP_SIZE;
+            boolean caught = bottom >= paddleY && powerUps.y[i] <= paddleY + PADDLE_HEIGHT
+                    && powerUps.x[i] + POWER_UP_SIZE >= paddleX && powerUps.x[i] <= paddleX + PADDLE_WIDTH;
+            if (caught) {
+                if (powerUps.type[i] == MULTI_BALL) {
+                    splitBalls();
+                }
+                powerUps.remove(i);
+            } else if (powerUps.y[i] >= height) {
+                powerUps.remove(i);
+            } else {
+                i++;
+            }
+        }
+    }
+
+    /**
+     * Gives every ball in play MULTI_BALL_SPLIT companions at its position, flying at the same speed
+     * in directions turned a little to either side, up to MAX_BALLS balls.
+     */
+    private void splitBalls() {
+        int count = balls.size;
+        for (int i = 0; i < count; i++) {
+            for (int k = 1; k <= MULTI_BALL_SPLIT && balls.size < MAX_BALLS; k++) {
+                double cos = SPLIT_COS[k];
+                double sin = SPLIT_SIN[k];
+                double vx = balls.vx[i] * cos - balls.vy[i] * sin;
+                double vy = balls.vx[i] * sin + balls.vy[i] * cos;
+                balls.add(balls.x[i], balls.y[i], vx, vy, 0);
+            }
+        }
+    }
+
+    /**
+     * Returns true when no round can be started any more: all bricks are gone or all turns are used.
+     */
+    public boolean isGameOver() {
+        return bricks.getAliveCount() == 0 || turnsLeft == 0 && state != State.PLAYING;
+    }
+
+    /**
+     * Returns a hash of the whole state of the game: the round, the counters, the paddle, the bricks,
+     * and the exact positions and velocities of the balls and power-ups.
+     * Two simulations with the same checksum have, with near certainty, played the same game.
+     */
+    public long checksum() {
+        long hash = mix(0x9E3779B97F4A7C15L, state.ordinal());
+        hash = mix(hash, ticks);
+        hash = mix(hash, turnsLeft);
+        hash = mix(hash, paddleBounces);
+        hash = mix(hash, Double.doubleToLongBits(paddleX));
+        for (int row = 0; row < bricks.getRows(); row++) {
+            for (int column = 0; column < bricks.getColumns(); column++) {
+                hash = mix(hash, bricks.getHitPoints(row, column));
+            }
+        }
+        for (EntityStore store : new EntityStore[]{balls, powerUps}) {
+            hash = mix(hash, store.size);
+            for (int i = 0; i < store.size; i++) {
+                hash = mix(hash, Double.doubleToLongBits(store.x[i]));
+                hash = mix(hash, Double.doubleToLongBits(store.y[i]));
+                hash = mix(hash, Double.doubleToLongBits(store.vx[i]));
+                hash = mix(hash, Double.doubleToLongBits(store.vy[i]));
+                hash = mix(hash, store.type[i]);
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Combines a hash with a value, with the finalizer of MurmurHash3.
+     */
+    private static long mix(long hash, long value) {
+        long h = (hash ^ value) * 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        return h ^ (h >>> 33);
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public BrickGrid getBricks() {
+        return bricks;
+    }
+
+    public double getWidth() {
+        return width;
+    }
+
+    public double getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the balls in play. The store is owned by the simulation and must only be read.
+     */
+    public EntityStore getBalls() {
+        return balls;
+    }
+
+    /**
+     * Returns the falling power-ups. The store is owned by the simulation and must only be read.
+     */
+    public EntityStore getPowerUps() {
+        return powerUps;
+    }
+
+    public double getPaddleX() {
+        return paddleX;
+    }
+
+    public double getPaddleY() {
+        return height - PADDLE_Y_OFFSET;
+    }
+
+    public int getTurnsLeft() {
+        return turnsLeft;
+    }
+
+    public int getPaddleBounces() {
+        return paddleBounces;
+    }
+
+    public long getTicks() {
+        return ticks;
+    }
+}
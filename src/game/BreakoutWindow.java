@@ -0,0 +1,190 @@
+package game;
+
+import java.awt.*;
+import java.awt.event.*;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The BreakoutWindow class plays breakout in a plain AWT window drawn by a BreakoutRenderer.
+ * The game loop runs on its own thread: it steps the simulation with a fixed timestep, renders one frame
+ * through the buffer strategy, and parks until the next frame is due, so the CPU is idle between frames.
+ * Mouse events only record the mouse; the loop thread is the only one that touches the simulation.
+ * <p>
+ * Given a directory of level files, it plays them in order; the next level is read and painted in the background
+ * while the current one is played (see BreakoutLevels). Without one, it plays the bricks of the game constants.
+ * <p>
+ * Usage: java game.BreakoutWindow [levelDirectory]
+ * <p>
+ * Press M for the frame metrics and S for the stress mode.
+ */
+public class BreakoutWindow implements Constant{
+
+    private final Frame frame = new Frame("Breakout");
+    private final Canvas canvas = new Canvas();
+    private final FrameMetrics metrics = new FrameMetrics();
+    private volatile double mouseX = APPLICATION_WIDTH / 2.0;  // Last x coordinate of the mouse on the canvas
+    private volatile boolean clicked;                          // Whether the mouse was clicked since the last check
+    private volatile boolean showMetrics;                      // Whether the metrics are drawn
+    private volatile boolean stressMode;                       // Whether STRESS_BALLS balls are kept in play
+    private volatile boolean closed;                           // Whether the window was closed
+    private BreakoutLevels<BreakoutRenderer.BrickLayer> levels; // Levels to play, or null for the default bricks
+    private int level;                                         // Index of the level being played
+
+    /**
+     * Opens the window and plays one game in it.
+     */
+    public static void main(String[] args) {
+        new BreakoutWindow().run(args.length > 0 ? args[0] : null);
+    }
+
+    private void run(String levelDirectory) {
+        canvas.setPreferredSize(new Dimension(APPLICATION_WIDTH, APPLICATION_HEIGHT));
+        canvas.addMouseMotionListener(new MouseMotionAdapter(){
+            public void mouseMoved(MouseEvent e) {
+                mouseX = e.getX();
+            }
+        });
+        canvas.addMouseListener(new MouseAdapter(){
+            public void mouseClicked(MouseEvent e) {
+                clicked = true;
+            }
+        });
+        canvas.addKeyListener(new KeyAdapter(){
+            public void keyPressed(KeyEvent e) {
+                if (e.getKeyCode() == KeyEvent.VK_M) {
+                    showMetrics = !showMetrics;
+                } else if (e.getKeyCode() == KeyEvent.VK_S) {
+                    stressMode = !stressMode;
+                    showMetrics = stressMode;
+                }
+            }
+        });
+        frame.addWindowListener(new WindowAdapter(){
+            public void windowClosing(WindowEvent e) {
+                closed = true;
+            }
+        });
+        frame.setResizable(false);
+        frame.add(canvas);
+        frame.pack();
+        frame.setVisible(true);
+        canvas.requestFocus();
+
+        BreakoutSimulation simulation = new BreakoutSimulation(APPLICATION_WIDTH, APPLICATION_HEIGHT,
+                System.nanoTime());
+        BreakoutRenderer renderer = new BreakoutRenderer(canvas, simulation);
+        simulation.setListener(renderer);
+        String message = "YOU HAVE THREE ATTEMPTS TO WIN!!!";
+        if (levelDirectory != null) {
+            GraphicsConfiguration configuration = canvas.getGraphicsConfiguration();
+            try {
+                levels = new BreakoutLevels<>(BreakoutLevels.list(Paths.get(levelDirectory)), APPLICATION_WIDTH,
+                        (level, grid) -> BreakoutRenderer.prepareBricks(grid, level.getColors(),
+                                APPLICATION_WIDTH, APPLICATION_HEIGHT, configuration));
+                if (levels.size() == 0) {
+                    System.err.println("No .level files in " + levelDirectory);
+                    levels = null;
+                } else {
+                    message = startLevel(simulation, renderer, 0);
+                }
+            } catch (IOException e) {
+                System.err.println("Cannot read the levels: " + e.getMessage());
+                levels = null;
+            }
+        }
+        try {
+            play(simulation, renderer, message);
+        } finally {
+            if (levels != null) {
+                levels.close();
+            }
+            frame.dispose();
+        }
+    }
+
+    /**
+     * Loads a level into the simulation and its prepared bricks into the renderer.
+     * The level after it starts loading in the background.
+     *
+     * @return The name of the level, to show before it starts.
+     * @throws IOException If the level file cannot be read.
+     */
+    private String startLevel(BreakoutSimulation simulation, BreakoutRenderer renderer, int index) throws IOException {
+        BreakoutLevels.Prepared<BreakoutRenderer.BrickLayer> next = levels.get(index);
+        simulation.loadLevel(next.grid);
+        renderer.setBrickLayer(next.prepared);
+        level = index;
+        return next.level.getName();
+    }
+
+    /**
+     * Plays the game: waits for a click before every round, plays the round, and shows the outcome
+     * for FREEZE_TIME without stopping the loop. A cleared level is followed by the next one, if there is one.
+     */
+    private void play(BreakoutSimulation simulation, BreakoutRenderer renderer, String message) {
+        long frameNanos = 1_000_000_000L / TARGET_FPS;
+        long previousFrame = System.nanoTime();
+        long messageUntil = System.nanoTime() + FREEZE_TIME * 1_000_000L;
+        double accumulator = 0;
+
+        while (!closed) {
+            long frameStart = System.nanoTime();
+            double frameTime = Math.min((frameStart - previousFrame) / 1e6, MAX_FRAME_TIME);
+            previousFrame = frameStart;
+            simulation.setPaddleX(mouseX - PADDLE_WIDTH / 2.0);
+
+            int ticks = 0;
+            if (simulation.getState() == BreakoutSimulation.State.PLAYING) {
+                accumulator += frameTime;
+                if (stressMode) {
+                    simulation.fillBalls(STRESS_BALLS);
+                }
+                while (accumulator >= TICK_TIME && simulation.step() == BreakoutSimulation.State.PLAYING) {
+                    accumulator -= TICK_TIME;
+                    ticks++;
+                }
+                if (simulation.getState() != BreakoutSimulation.State.PLAYING) {
+                    message = simulation.getState() == BreakoutSimulation.State.MISSED ? "WASTED" : "YOU WIN!";
+                    messageUntil = frameStart + FREEZE_TIME * 1_000_000L;
+                }
+            } else if (frameStart >= messageUntil) {
+                if (simulation.getState() == BreakoutSimulation.State.CLEARED
+                        && levels != null && level + 1 < levels.size()) {
+                    try {
+                        message = startLevel(simulation, renderer, level + 1);
+                        messageUntil = frameStart + FREEZE_TIME * 1_000_000L;
+                    } catch (IOException e) {
+                        System.err.println("Cannot read the next level: " + e.getMessage());
+                        levels = null;
+                    }
+                } else if (simulation.isGameOver()) {
+                    message = "GAME OVER";
+                } else {
+                    message = "Attempts left: " + simulation.getTurnsLeft();
+                    if (clicked) {
+                        simulation.startRound();
+                        message = null;
+                        accumulator = 0;
+                    }
+                }
+            }
+            clicked = false;
+            long updateEnd = System.nanoTime();
+
+            String metricsLine = showMetrics
+                    ? metrics.summary() + "  balls " + simulation.getBalls().size() : null;
+            double alpha = simulation.getState() == BreakoutSimulation.State.PLAYING ? accumulator / TICK_TIME : 1;
+            renderer.render(alpha, message, metricsLine);
+            long renderEnd = System.nanoTime();
+            metrics.record(frameTime, updateEnd - frameStart, renderEnd - updateEnd, ticks);
+
+            // Sleep until the next frame is due instead of spinning.
+            long nextFrame = frameStart + frameNanos;
+            while (System.nanoTime() < nextFrame) {
+                LockSupport.parkNanos(nextFrame - System.nanoTime());
+            }
+        }
+    }
+}
@@ -0,0 +1,362 @@
+package game;
+
+import java.util.Arrays;
+
+/**
+ * The BrickGrid class keeps the bricks of the game in a uniform grid indexed by row and column,
+ * with the same geometry drawBrickLayout uses: bricks of equal width separated by BRICK_SEP,
+ * the first row at BRICK_Y_OFFSET. A grid made from a BreakoutLevel may leave cells empty and gives every brick
+ * a type and a number of hit points, so levels of any shape are held in two flat byte arrays.
+ * Collisions are found with a swept test of the moving ball against the bricks of the few cells
+ * the ball can reach in one step, so the cost does not depend on the number of bricks.
+ * The class does not depend on any graphics library.
+ */
+public class BrickGrid implements Constant{
+
+    private final int rows;                 // Number of rows of bricks
+    private final int columns;              // Number of bricks per row
+    private final double left, top;         // Top left corner of the first brick
+    private final double brickWidth;        // Width of a brick
+    private final double brickHeight;       // Height of a brick
+    private final double separation;        // Gap between two neighbouring bricks
+    private final byte[] types;             // Type of the brick at row * columns + column, 0 for an empty cell
+    private final byte[] hitPoints;         // Hits the brick at row * columns + column still takes, 0 once it is gone
+    private final int brickCount;           // Number of bricks the grid started with
+    private int aliveCount;                 // Number of bricks still there
+
+    /**
+     * Creates a grid full of bricks.
+     *
+     * @param rows        The number of rows.
+     * @param columns     The number of bricks per row.
+     * @param left        The x coordinate of the left edge of the first column.
+     * @param top         The y coordinate of the top edge of the first row.
+     * @param brickWidth  The width of a brick.
+     * @param brickHeight The height of a brick.
+     * @param separation  The gap between two neighbouring bricks, horizontally and vertically.
+     */
+    public BrickGrid(int rows, int columns, double left, double top,
+                     double brickWidth, double brickHeight, double separation) {
+        this.rows = rows;
+        this.columns = columns;
+        this.left = left;
+        this.top = top;
+        this.brickWidth = brickWidth;
+        this.brickHeight = brickHeight;
+        this.separation = separation;
+        this.types = new byte[rows * columns];
+        this.hitPoints = new byte[rows * columns];
+        Arrays.fill(types, (byte) 1);
+        Arrays.fill(hitPoints, (byte) 1);
+        this.brickCount = this.aliveCount = rows * columns;
+    }
+
+    /**
+     * Creates a grid with the given bricks; a cell with 0 hit points is empty.
+     *
+     * @param types     The type of every cell, row by row, from 1 to 127.
+     * @param hitPoints The hit points of every cell, row by row, from 0 to 127.
+     * @throws IllegalArgumentException If the arrays do not have rows * columns cells.
+     */
+    public BrickGrid(int rows, int columns, double left, double top,
+                     double brickWidth, double brickHeight, double separation, byte[] types, byte[] hitPoints) {
+        if (types.length != rows * columns || hitPoints.length != rows * columns) {
+            throw new IllegalArgumentException("A " + rows + "x" + columns + " grid needs " + rows * columns + " cells");
+        }
+        this.rows = rows;
+        this.columns = columns;
+        this.left = left;
+        this.top = top;
+        this.brickWidth = brickWidth;
+        this.brickHeight = brickHeight;
+        this.separation = separation;
+        this.types = types.clone();
+        this.hitPoints = hitPoints.clone();
+        int count = 0;
+        for (int i = 0; i < hitPoints.length; i++) {
+            if (hitPoints[i] > 0) {
+                count++;
+            } else {
+                this.types[i] = 0;
+            }
+        }
+        this.brickCount = this.aliveCount = count;
+    }
+
+    /**
+     * Creates the grid of the game constants for a stage of the given width, like drawBrickLayout lays it out.
+     *
+     * @param stageWidth The width of the stage.
+     * @return A grid of N_BRICK_ROWS x N_BRICKS_PER_ROW bricks.
+     */
+    public static BrickGrid forStage(double stageWidth) {
+        int brickWidth = ((int) stageWidth - (N_BRICKS_PER_ROW - 1) * BRICK_SEP) / N_BRICKS_PER_ROW;
+        BrickGrid grid = new BrickGrid(N_BRICK_ROWS, N_BRICKS_PER_ROW, 0, BRICK_Y_OFFSET,
+                brickWidth, BRICK_HEIGHT, BRICK_SEP);
+        // Rows alternate colors every two rows; the type of a brick is its color, counted from 1.
+        for (int row = 0; row < grid.rows; row++) {
+            Arrays.fill(grid.types, row * grid.columns, (row + 1) * grid.columns, (byte) ((row / 2) % 5 + 1));
+        }
+        return grid;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public double getBrickWidth() {
+        return brickWidth;
+    }
+
+    public double getBrickHeight() {
+        return brickHeight;
+    }
+
+    public double getLeft() {
+        return left;
+    }
+
+    public double getTop() {
+        return top;
+    }
+
+    public double getSeparation() {
+        return separation;
+    }
+
+    /**
+     * Returns the x coordinate of the left edge of the bricks in a column.
+     */
+    public double brickX(int column) {
+        return left + column * (brickWidth + separation);
+    }
+
+    /**
+     * Returns the y coordinate of the top edge of the bricks in a row.
+     */
+    public double brickY(int row) {
+        return top + row * (brickHeight + separation);
+    }
+
+    /**
+     * Returns the index of a cell, row by row.
+     */
+    public int index(int row, int column) {
+        return row * columns + column;
+    }
+
+    public boolean isAlive(int row, int column) {
+        return hitPoints[index(row, column)] > 0;
+    }
+
+    /**
+     * Returns the type of the brick in a cell, or 0 if the cell was empty from the start.
+     */
+    public int getType(int row, int column) {
+        return types[index(row, column)];
+    }
+
+    /**
+     * Returns the number of hits the brick in a cell still takes, 0 if it is gone.
+     */
+    public int getHitPoints(int row, int column) {
+        return hitPoints[index(row, column)];
+    }
+
+    /**
+     * Returns the number of bricks still on the stage.
+     */
+    public int getAliveCount() {
+        return aliveCount;
+    }
+
+    /**
+     * Returns the number of bricks the grid started with.
+     */
+    public int getBrickCount() {
+        return brickCount;
+    }
+
+    /**
+     * Takes one hit point from the brick of a cell, and removes it when none is left.
+     *
+     * @return True if the brick is gone after the hit.
+     */
+    public boolean hit(int row, int column) {
+        int i = index(row, column);
+        if (hitPoints[i] > 0 && --hitPoints[i] == 0) {
+            aliveCount--;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Removes the brick of a cell, if it is still there.
+     */
+    public void remove(int row, int column) {
+        int i = index(row, column);
+        if (hitPoints[i] > 0) {
+            hitPoints[i] = 0;
+            aliveCount--;
+        }
+    }
+
+    /**
+     * Finds the first brick a ball hits while it moves by (dx, dy).
+     * Only the cells covered by the bounding box of the whole move are tested.
+     *
+     * @param centerX The x coordinate of the center of the ball before the move.
+     * @param centerY The y coordinate of the center of the ball before the move.
+     * @param radius  The radius of the ball.
+     * @param dx      The horizontal move.
+     * @param dy      The vertical move.
+     * @return The earliest hit, or null if the ball reaches no brick.
+     */
+    public Hit sweep(double centerX, double centerY, double radius, double dx, double dy) {
+        double pitchX = brickWidth + separation;
+        double pitchY = brickHeight + separation;
+        int fromColumn = Math.max(0, (int) Math.floor((Math.min(centerX, centerX + dx) - radius - left) / pitchX));
+        int toColumn = Math.min(columns - 1, (int) Math.floor((Math.max(centerX, centerX + dx) + radius - left) / pitchX));
+        int fromRow = Math.max(0, (int) Math.floor((Math.min(centerY, centerY + dy) - radius - top) / pitchY));
+        int toRow = Math.min(rows - 1, (int) Math.floor((Math.max(centerY, centerY + dy) + radius - top) / pitchY));
+
+        Hit first = null;
+        for (int row = fromRow; row <= toRow; row++) {
+            for (int column = fromColumn; column <= toColumn; column++) {
+                if (hitPoints[index(row, column)] == 0) {
+                    continue;
+                }
+                Hit hit = sweepBox(centerX, centerY, radius, dx, dy,
+                        brickX(column), brickY(row), brickX(column) + brickWidth, brickY(row) + brickHeight);
+                if (hit != null && (first == null || hit.time < first.time)) {
+                    hit.row = row;
+                    hit.column = column;
+                    first = hit;
+                }
+            }
+        }
+        return first;
+    }
+
+    /**
+     * Sweeps a circle along (dx, dy) against the box [minX, maxX] x [minY, maxY].
+     * The box grown by the radius is hit with a ray from the center; where the ray enters it beside a corner
+     * of the box, the hit is moved to the corner's circle, so the rounded shape of the ball is respected.
+     * A ball that already overlaps the box hits it at time 0 on the side it overlaps least.
+     *
+     * @return The hit with its time from 0 to 1 and its normal, or null if there is none.
+     */
+    static Hit sweepBox(double cx, double cy, double r, double dx, double dy,
+                        double minX, double minY, double maxX, double maxY) {
+        double nearestX = Math.max(minX, Math.min(cx, maxX));
+        double nearestY = Math.max(minY, Math.min(cy, maxY));
+        double ox = cx - nearestX;
+        double oy = cy - nearestY;
+        if (ox * ox + oy * oy <= r * r) {
+            double pushLeft = cx + r - minX;
+            double pushRight = maxX - (cx - r);
+            double pushUp = cy + r - minY;
+            double pushDown = maxY - (cy - r);
+            double least = Math.min(Math.min(pushLeft, pushRight), Math.min(pushUp, pushDown));
+            if (least == pushUp || least == pushDown) {
+                return new Hit(0, 0, least == pushUp ? -1 : 1);
+            }
+            return new Hit(0, least == pushLeft ? -1 : 1, 0);
+        }
+
+        // Slab test against the box grown by the radius.
+        double tEnterX, tExitX, tEnterY, tExitY;
+        if (dx == 0) {
+            if (cx < minX - r || cx > maxX + r) {
+                return null;
+            }
+            tEnterX = Double.NEGATIVE_INFINITY;
+            tExitX = Double.POSITIVE_INFINITY;
+        } else {
+            double t1 = (minX - r - cx) / dx;
+            double t2 = (maxX + r - cx) / dx;
+            tEnterX = Math.min(t1, t2);
+            tExitX = Math.max(t1, t2);
+        }
+        if (dy == 0) {
+            if (cy < minY - r || cy > maxY + r) {
+                return null;
+            }
+            tEnterY = Double.NEGATIVE_INFINITY;
+            tExitY = Double.POSITIVE_INFINITY;
+        } else {
+            double t1 = (minY - r - cy) / dy;
+            double t2 = (maxY + r - cy) / dy;
+            tEnterY = Math.min(t1, t2);
+            tExitY = Math.max(t1, t2);
+        }
+        double tEnter = Math.max(tEnterX, tEnterY);
+        double tExit = Math.min(tExitX, tExitY);
+        if (tEnter > tExit || tEnter > 1 || tExit < 0) {
+            return null;
+        }
+
+        double hitX = cx + dx * tEnter;
+        double hitY = cy + dy * tEnter;
+        boolean besideX = hitX < minX || hitX > maxX;
+        boolean besideY = hitY < minY || hitY > maxY;
+        if (!besideX || !besideY) {
+            if (tEnterX > tEnterY) {
+                return new Hit(tEnter, dx > 0 ? -1 : 1, 0);
+            }
+            return new Hit(tEnter, 0, dy > 0 ? -1 : 1);
+        }
+
+        // Corner region: intersect the ray with the circle of radius r around the corner.
+        double cornerX = hitX < minX ? minX : maxX;
+        double cornerY = hitY < minY ? minY : maxY;
+        double fx = cx - cornerX;
+        double fy = cy - cornerY;
+        double a = dx * dx + dy * dy;
+        double b = 2 * (fx * dx + fy * dy);
+        double c = fx * fx + fy * fy - r * r;
+        double discriminant = b * b - 4 * a * c;
+        if (discriminant < 0) {
+            return null;
+        }
+        double t = (-b - Math.sqrt(discriminant)) / (2 * a);
+        if (t < 0 || t > 1) {
+            return null;
+        }
+        double nx = cx + dx * t - cornerX;
+        double ny = cy + dy * t - cornerY;
+        if (Math.abs(nx) > Math.abs(ny)) {
+            return new Hit(t, Math.signum(nx), 0);
+        }
+        return new Hit(t, 0, Math.signum(ny));
+    }
+
+    /**
+     * A collision found by a sweep: when during the move it happens, the side of the brick that was hit,
+     * and which brick it was.
+     */
+    public static class Hit{
+        public final double time;         // Fraction of the move before the ball touches the brick
+        public final double normalX;      // Horizontal direction of the hit side: -1 left, 1 right, 0 top or bottom
+        public final double normalY;      // Vertical direction of the hit side: -1 top, 1 bottom, 0 left or right
+        public int row, column;           // Cell of the brick that was hit
+
+        Hit(double time, double normalX, double normalY) {
+            this.time = time;
+            this.normalX = normalX;
+            this.normalY = normalY;
+        }
+
+        /**
+         * Returns true if the ball hit the top or the bottom of the brick, so its vertical velocity has to flip.
+         */
+        public boolean isVertical() {
+            return normalY != 0;
+        }
+    }
+}
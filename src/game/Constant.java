@@ -16,6 +16,16 @@ public interface Constant{
     int BRICK_Y_OFFSET = 70;       // Vertical offset for the bricks
     int NUM_TURNS = 3;             // Number of turns or attempts for the player
     int FREEZE_TIME = 1500;         // Freeze time after displaying messages (in milliseconds)
-    int PAUSE_TIME = 10;            // Pause time for animations (in milliseconds)
+    int TICK_TIME = 10;             // Length of one simulation step (in milliseconds)
+    int FRAME_TIME = 16;            // Target time between two rendered frames (in milliseconds)
+    int MAX_FRAME_TIME = 250;       // Longest frame time the simulation catches up on (in milliseconds)
+    int TARGET_FPS = 144;           // Frames per second of the Java2D renderer in BreakoutWindow
     double BALL_SPEED = 2.0;       // Speed of the ball
+    int MAX_BALLS = 1000;           // Most balls that can be in play at once
+    double POWER_UP_CHANCE = 0.15;  // Chance that a broken brick drops a power-up
+    double POWER_UP_SPEED = 1.5;    // Falling speed of a power-up (per simulation step)
+    int POWER_UP_SIZE = 12;         // Width and height of a power-up
+    int MULTI_BALL_SPLIT = 2;       // Extra balls every ball in play gets from a multi-ball power-up
+    int STRESS_BALLS = 500;         // Balls in play in the stress mode
+    String REPLAY_FILE = "breakout.replay"; // File the last game is recorded to
 }
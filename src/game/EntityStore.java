@@ -0,0 +1,123 @@
+package game;
+
+import java.util.Arrays;
+
+/**
+ * The EntityStore class keeps moving entities of one kind, such as balls or power-ups,
+ * as a structure of arrays: entity i is at (x[i], y[i]) and moves by (vx[i], vy[i]) per step.
+ * The simulation updates them in tight loops over primitive arrays instead of chasing one object per entity.
+ * Removing an entity moves the last one into its place, so indexes are only stable within one pass.
+ */
+public final class EntityStore{
+
+    double[] x, y;                     // Top left corner of every entity
+    double[] previousX, previousY;     // Position of every entity before the last step
+    double[] vx, vy;                   // Velocity of every entity, per step
+    int[] type;                        // Kind of every entity, for stores that hold more than one kind
+    int size;                          // Number of entities in the store
+
+    /**
+     * Creates an empty store with room for the given number of entities; it grows when it is full.
+     *
+     * @param capacity The initial capacity.
+     */
+    public EntityStore(int capacity) {
+        capacity = Math.max(1, capacity);
+        x = new double[capacity];
+        y = new double[capacity];
+        previousX = new double[capacity];
+        previousY = new double[capacity];
+        vx = new double[capacity];
+        vy = new double[capacity];
+        type = new int[capacity];
+    }
+
+    /**
+     * Adds an entity that has not moved yet.
+     *
+     * @return The index of the new entity.
+     */
+    public int add(double x, double y, double vx, double vy, int type) {
+        if (size == this.x.length) {
+            grow();
+        }
+        int i = size++;
+        this.x[i] = this.previousX[i] = x;
+        this.y[i] = this.previousY[i] = y;
+        this.vx[i] = vx;
+        this.vy[i] = vy;
+        this.type[i] = type;
+        return i;
+    }
+
+    /**
+     * Removes the entity with the given index by moving the last entity into its place.
+     */
+    public void remove(int i) {
+        int last = --size;
+        x[i] = x[last];
+        y[i] = y[last];
+        previousX[i] = previousX[last];
+        previousY[i] = previousY[last];
+        vx[i] = vx[last];
+        vy[i] = vy[last];
+        type[i] = type[last];
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public double getX(int i) {
+        return x[i];
+    }
+
+    public double getY(int i) {
+        return y[i];
+    }
+
+    public double getVx(int i) {
+        return vx[i];
+    }
+
+    public double getVy(int i) {
+        return vy[i];
+    }
+
+    public int getType(int i) {
+        return type[i];
+    }
+
+    /**
+     * Returns the x coordinate of an entity between its previous and its current position.
+     *
+     * @param alpha How far the entity is between the two positions, from 0 to 1.
+     */
+    public double getX(int i, double alpha) {
+        return previousX[i] + (x[i] - previousX[i]) * alpha;
+    }
+
+    /**
+     * Returns the y coordinate of an entity between its previous and its current position.
+     *
+     * @param alpha How far the entity is between the two positions, from 0 to 1.
+     */
+    public double getY(int i, double alpha) {
+        return previousY[i] + (y[i] - previousY[i]) * alpha;
+    }
+
+    private void grow() {
+        int capacity = x.length * 2;
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        previousX = Arrays.copyOf(previousX, capacity);
+        previousY = Arrays.copyOf(previousY, capacity);
+        vx = Arrays.copyOf(vx, capacity);
+        vy = Arrays.copyOf(vy, capacity);
+        type = Arrays.copyOf(type, capacity);
+    }
+}
@@ -0,0 +1,66 @@
+package game;
+
+/**
+ * The FrameMetrics class keeps running averages of how long the frames of the game loop take:
+ * the whole frame, the simulation steps within it and the rendering.
+ * Averages are exponential, so that a single hitch is visible but fades within a second.
+ */
+public class FrameMetrics{
+
+    private static final double SMOOTHING = 0.05;      // Weight of the newest frame in the averages
+
+    private double frameTime;                           // Average time between two frames (in milliseconds)
+    private double updateTime;                          // Average time of the simulation steps of a frame
+    private double renderTime;                          // Average time of rendering a frame
+    private double worstFrameTime;                      // Longest frame since the last reset
+    private int ticks;                                  // Simulation steps of the last frame
+
+    /**
+     * Adds one frame to the averages.
+     *
+     * @param frameMillis  The time since the previous frame, in milliseconds.
+     * @param updateNanos  The time spent in simulation steps, in nanoseconds.
+     * @param renderNanos  The time spent rendering, in nanoseconds.
+     * @param frameTicks   The number of simulation steps taken in the frame.
+     */
+    public void record(double frameMillis, long updateNanos, long renderNanos, int frameTicks) {
+        if (frameTime == 0) {
+            frameTime = frameMillis;
+        }
+        frameTime += SMOOTHING * (frameMillis - frameTime);
+        updateTime += SMOOTHING * (updateNanos / 1e6 - updateTime);
+        renderTime += SMOOTHING * (renderNanos / 1e6 - renderTime);
+        worstFrameTime = Math.max(worstFrameTime, frameMillis);
+        ticks = frameTicks;
+    }
+
+    /**
+     * Forgets the longest frame, for example after the game was paused on purpose.
+     */
+    public void resetWorst() {
+        worstFrameTime = 0;
+    }
+
+    public double getFrameTime() {
+        return frameTime;
+    }
+
+    public double getUpdateTime() {
+        return updateTime;
+    }
+
+    public double getRenderTime() {
+        return renderTime;
+    }
+
+    /**
+     * Returns a one-line summary for the on-screen overlay.
+     *
+     * @return The averages in milliseconds and the frame rate they give.
+     */
+    public String summary() {
+        double fps = frameTime > 0 ? 1000 / frameTime : 0;
+        return String.format("%.0f fps  frame %.1f ms (worst %.1f)  update %.2f ms  render %.2f ms  ticks %d",
+                fps, frameTime, worstFrameTime, updateTime, renderTime, ticks);
+    }
+}
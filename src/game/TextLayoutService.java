@@ -0,0 +1,141 @@
+package game;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The TextLayoutService class finds the largest font size at which a message fits on the canvas with a margin,
+ * like calculateFontSize did by trying every size from the largest down with a new GLabel.
+ * It measures with FontMetrics that are made once per size, finds the size with a binary search,
+ * and remembers the layout of every (text, canvas size) it was asked for, so a repeated message costs one lookup.
+ * The methods are synchronized, since the game thread and the event thread both show messages.
+ */
+public class TextLayoutService{
+
+    private static final int MAX_FONT_SIZE = 60;     // Largest font size a message gets
+    private static final int MARGIN = 20;            // Space the text leaves free, horizontally and vertically
+    private static final int CACHE_SIZE = 256;       // Layouts remembered before the oldest is forgotten
+
+    private final String family;                     // Font family of the messages
+    private final FontMetrics[] metrics = new FontMetrics[MAX_FONT_SIZE + 1]; // Metrics by font size, made on demand
+    private final Graphics2D measure;                // Graphics the metrics come from; it never draws
+    private final Map<Key, Layout> layouts = new LinkedHashMap<Key, Layout>(16, 0.75f, true){
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Layout> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    /**
+     * Creates a layout service for messages in the given font family, in plain style.
+     *
+     * @param family The font family, such as "Arial".
+     */
+    public TextLayoutService(String family) {
+        this.family = family;
+        this.measure = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB).createGraphics();
+    }
+
+    /**
+     * Returns the layout of a message centered on a canvas of the given size, in the largest font that fits.
+     *
+     * @param text   The message.
+     * @param width  The width of the canvas.
+     * @param height The height of the canvas.
+     * @return The font and the size of the text in it; the font size is at least 1, even if nothing fits.
+     */
+    public synchronized Layout layout(String text, int width, int height) {
+        Key key = new Key(text, width, height);
+        Layout layout = layouts.get(key);
+        if (layout == null) {
+            layout = measure(text, width - MARGIN, height - MARGIN);
+            layouts.put(key, layout);
+        }
+        return layout;
+    }
+
+    /**
+     * Finds the largest size in [1, MAX_FONT_SIZE] at which the text fits in the box; the width and height
+     * of a text only grow with the font size, so the sizes that fit are a prefix of that range.
+     */
+    private Layout measure(String text, int maxWidth, int maxHeight) {
+        int low = 1;                     // Fits, or is the smallest size
+        int high = MAX_FONT_SIZE;
+        while (low < high) {
+            int size = (low + high + 1) >>> 1;
+            FontMetrics fm = metrics(size);
+            if (fm.stringWidth(text) <= maxWidth && fm.getHeight() <= maxHeight) {
+                low = size;
+            } else {
+                high = size - 1;
+            }
+        }
+        FontMetrics fm = metrics(low);
+        return new Layout(fm.getFont(), fm.stringWidth(text), fm.getHeight(), fm.getAscent());
+    }
+
+    private FontMetrics metrics(int size) {
+        if (metrics[size] == null) {
+            metrics[size] = measure.getFontMetrics(new Font(family, Font.PLAIN, size));
+        }
+        return metrics[size];
+    }
+
+    /**
+     * Where and how large a message is drawn.
+     */
+    public static class Layout{
+        public final Font font;          // The font that fits
+        public final int width;          // Width of the text in that font
+        public final int height;         // Line height of the text in that font
+        public final int ascent;         // Distance from the top of the line to the baseline
+
+        Layout(Font font, int width, int height, int ascent) {
+            this.font = font;
+            this.width = width;
+            this.height = height;
+            this.ascent = ascent;
+        }
+
+        /**
+         * Returns the x coordinate of the left edge of the text when it is centered on a canvas of the given width.
+         */
+        public double centerX(double canvasWidth) {
+            return (canvasWidth - width) / 2;
+        }
+
+        /**
+         * Returns the y coordinate of the baseline of the text when it is centered on a canvas of the given height.
+         */
+        public double baselineY(double canvasHeight) {
+            return (canvasHeight - height) / 2 + ascent;
+        }
+    }
+
+    private static final class Key{
+        private final String text;
+        private final int width, height;
+
+        Key(String text, int width, int height) {
+            this.text = text;
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return width == other.width && height == other.height && text.equals(other.text);
+        }
+
+        @Override
+        public int hashCode() {
+            return (text.hashCode() * 31 + width) * 31 + height;
+        }
+    }
+}
@@ -12,7 +12,14 @@ package name_surfer;
 import com.shpp.cs.a.simple.SimpleProgram;
 
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import java.awt.event.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 
 public class NameSurfer extends SimpleProgram implements NameSurferConstants{
@@ -20,14 +27,42 @@ public class NameSurfer extends SimpleProgram implements NameSurferConstants{
 
     /**
      * This method has the responsibility for reading in the data base
-     * and initializing the interactors at the top of the window.
+     * and initializing the interactors at the top of the window.  The
+     * data base is read in the background, so the window can be used
+     * at once; a progress bar shows how far the loading got.
      */
     public void init() {
-        dataBase = new NameSurferDataBase(NAMES_DATA_FILE);
         graph = new NameSurferGraph();
         add(graph);
         createButtons();
         addActionListeners();
+        loadDataBase();
+    }
+
+    /**
+     * Starts reading the data base on the worker thread and shows the
+     * progress in a bar that disappears once the data base is ready.
+     * Lookups requested before that wait for the loading to finish.
+     */
+    private void loadDataBase() {
+        JProgressBar progressBar = new JProgressBar(0, 100);
+        progressBar.setStringPainted(true);
+        progressBar.setString("Loading names");
+        add(progressBar, NORTH);
+
+        dataBase = CompletableFuture.supplyAsync(() -> new NameSurferDataBase(NAMES_DATA_FILE, progress -> {
+            int percent = (int) Math.round(progress * 100);
+            SwingUtilities.invokeLater(() -> progressBar.setValue(Math.max(progressBar.getValue(), percent)));
+        }), worker);
+        // Build the "did you mean" index right away on the common pool, so that lookups
+        // on the worker do not queue behind it; only a lookup that misses waits for it.
+        dataBase.thenAcceptAsync(NameSurferDataBase::fuzzyIndex);
+        dataBase.whenComplete((loaded, error) -> SwingUtilities.invokeLater(() -> {
+            progressBar.setVisible(false);
+            if (error != null) {
+                getDialog().showErrorMessage("Error reading file: " + error.getCause());
+            }
+        }));
     }
 
     /**
@@ -42,42 +77,167 @@ public class NameSurfer extends SimpleProgram implements NameSurferConstants{
         textField.setActionCommand("Graph");
         textField.addActionListener(this);
         add(textField, NORTH);
+        createAutocomplete();
 
         add(new JButton("Graph"), NORTH);
         add(new JButton("Clear"), NORTH);
 
     }
+    /**
+     * Shows name suggestions under the text field while the user types.
+     * Every edit restarts a short timer, so a lookup only runs once the
+     * typing pauses; the lookup itself runs on a background thread and
+     * only the popup update comes back to the Swing thread.
+     */
+    private void createAutocomplete() {
+        suggestions = new JPopupMenu();
+        suggestions.setFocusable(false);
+
+        suggestionTimer = new Timer(AUTOCOMPLETE_DELAY, e -> lookUpSuggestions());
+        suggestionTimer.setRepeats(false);
+
+        textField.getDocument().addDocumentListener(new DocumentListener() {
+            public void insertUpdate(DocumentEvent e) {
+                textChanged();
+            }
+
+            public void removeUpdate(DocumentEvent e) {
+                textChanged();
+            }
+
+            public void changedUpdate(DocumentEvent e) {
+                textChanged();
+            }
+        });
+    }
+
+    /**
+     * Restarts the suggestion timer after an edit, unless the edit came
+     * from picking a suggestion.
+     */
+    private void textChanged() {
+        if (!choosingSuggestion) {
+            suggestionTimer.restart();
+        }
+    }
+
+    /**
+     * Looks up completions for the current text off the Swing thread.
+     * Results of a lookup that was overtaken by newer typing are dropped.
+     */
+    private void lookUpSuggestions() {
+        String prefix = textField.getText().trim();
+        long request = ++suggestionRequest;
+        if (prefix.isEmpty()) {
+            suggestions.setVisible(false);
+            return;
+        }
+        dataBase.thenApplyAsync(db -> db.findCompletions(prefix, AUTOCOMPLETE_SIZE), worker)
+                .thenAccept(found -> SwingUtilities.invokeLater(() -> {
+                    if (request == suggestionRequest) {
+                        showSuggestions(found);
+                    }
+                }));
+    }
+
+    /**
+     * Fills the popup under the text field with the found names.
+     */
+    private void showSuggestions(List<NameSurferEntry> found) {
+        suggestions.setVisible(false);
+        suggestions.removeAll();
+        if (found.isEmpty() || !textField.isShowing()) {
+            return;
+        }
+        for (NameSurferEntry entry : found) {
+            JMenuItem item = new JMenuItem(entry.getName());
+            item.addActionListener(e -> chooseSuggestion(entry.getName()));
+            suggestions.add(item);
+        }
+        suggestions.show(textField, 0, textField.getHeight());
+    }
+
+    /**
+     * Puts the chosen name into the text field and graphs it.
+     */
+    private void chooseSuggestion(String name) {
+        choosingSuggestion = true;
+        textField.setText(name);
+        choosingSuggestion = false;
+        textField.postActionEvent();
+    }
+
     /* Method: actionPerformed(e) */
 
     /**
      * This class is responsible for detecting when the buttons are
      * clicked, so you will have to define a method to respond to
-     * button actions.
+     * button actions.  Names are looked up on the worker thread; only
+     * adding the found entry to the graph happens on the Swing thread.
      */
     public void actionPerformed(ActionEvent e) {
         String cmd = e.getActionCommand();
+        suggestionTimer.stop();
+        suggestionRequest++;
+        suggestions.setVisible(false);
 
         // If the "Graph" button is clicked
         if (cmd.equals("Graph")) {
             String name = textField.getText();
-            NameSurferEntry entry = dataBase.findEntry(name);
-          //  System.out.println(entry);
-            // If the name is found in the database
-            if (entry != null) {
-                // Add the name's popularity entry to the graph and update the display
-                graph.addEntry(entry);
-                graph.update();
-            } else {
-                // Show an error message in case the name is not found in the database
-                this.getDialog().showErrorMessage(dialogMessage + " ! ! !");
-            }
+            long generation = graphGeneration;
+            dataBase.thenAcceptAsync(db -> {
+                NameSurferEntry entry = db.findEntry(name);
+                if (entry != null) {
+                    NameSurferEntry found = entry.detach();
+                    SwingUtilities.invokeLater(() -> showEntry(found, generation));
+                } else {
+                    List<String> similar = new ArrayList<>();
+                    for (NameSurferEntry match : db.findSimilar(name, SIMILAR_SIZE)) {
+                        similar.add(match.getName());
+                    }
+                    SwingUtilities.invokeLater(() -> showMissing(similar, generation));
+                }
+            }, worker);
         }
         // If the "Clear" button is clicked
         else if (cmd.equals("Clear")) {
-            // Clear the graph, reset the text field, and update the display
+            // Clear the graph and reset the text field
+            graphGeneration++;
             graph.clear();
             textField.setText("");
-            graph.update();
+        }
+    }
+
+    /**
+     * Adds a looked-up entry to the graph, unless the graph was cleared
+     * after the lookup was requested.
+     *
+     * @param entry      the found entry
+     * @param generation the value of graphGeneration when the lookup was requested
+     */
+    private void showEntry(NameSurferEntry entry, long generation) {
+        if (generation != graphGeneration) {
+            return;
+        }
+        // Add the name's popularity entry to the graph, which has it placed off the Swing thread
+        graph.addEntry(entry);
+    }
+
+    /**
+     * Shows an error message in case the name is not found in the
+     * database, together with the closest names that are.
+     *
+     * @param similar    the names of the closest entries, best first
+     * @param generation the value of graphGeneration when the lookup was requested
+     */
+    private void showMissing(List<String> similar, long generation) {
+        if (generation != graphGeneration) {
+            return;
+        }
+        if (similar.isEmpty()) {
+            this.getDialog().showErrorMessage(dialogMessage + " ! ! !");
+        } else {
+            this.getDialog().showErrorMessage(dialogMessage + " ! ! !\nDid you mean " + String.join(", ", similar) + "?");
         }
     }
 
@@ -86,13 +246,42 @@ public class NameSurfer extends SimpleProgram implements NameSurferConstants{
      */
     private NameSurferGraph graph;
     /**
-     * Represents the database of name popularity data used in the program.
+     * Represents the database of name popularity data used in the program,
+     * completed once it has been read in the background.
      */
-    private NameSurferDataBase dataBase;
+    private CompletableFuture<NameSurferDataBase> dataBase;
     /**
      * Represents the text field where users can input a name for graphing.
      */
     private JTextField textField;
+    /**
+     * The popup that lists name suggestions under the text field.
+     */
+    private JPopupMenu suggestions;
+    /**
+     * Delays suggestion lookups until the user pauses typing.
+     */
+    private Timer suggestionTimer;
+    /**
+     * Loads the database and runs lookups away from the Swing thread, one at a time.
+     */
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "NameSurfer worker");
+        thread.setDaemon(true);
+        return thread;
+    });
+    /**
+     * Counts suggestion lookups, so that stale results can be recognized.
+     */
+    private long suggestionRequest;
+    /**
+     * Counts clears of the graph, so that lookups finishing after a clear are dropped.
+     */
+    private long graphGeneration;
+    /**
+     * True while the text field is filled from a chosen suggestion.
+     */
+    private boolean choosingSuggestion;
     /**
      * A static message to be displayed in case the name does not exist in the database.
      */
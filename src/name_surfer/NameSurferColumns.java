@@ -0,0 +1,439 @@
+package name_surfer;
+
+/*
+ * File: NameSurferColumns.java
+ * ----------------------------
+ * This class is the columnar storage behind NameSurferDataBase.
+ * Instead of one object per name, all names live in a single
+ * sorted byte column with an offset table, all ranks live in one
+ * flat matrix indexed by name id, and lookups go through a
+ * compact open-addressing hash index.  Names are compared
+ * independent of case, so that "Eric" and "ERIC" are the same.
+ *
+ * The columns are kept in buffers, so they can either wrap arrays
+ * built in memory or point straight into a memory-mapped snapshot.
+ */
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+final class NameSurferColumns{
+
+    /* Marks an empty slot of the hash index. */
+    static final int EMPTY_SLOT = -1;
+
+    /* All names in case-insensitive order, encoded as UTF-8 one after another. */
+    private final ByteBuffer nameBytes;
+
+    /* Start of every name in nameBytes; the name with id i ends where name i + 1 starts. */
+    private final IntBuffer nameOffsets;
+
+    /* Ranks of all names, row by row: the rank of name id in decade d is at id * decades + d. */
+    private final IntBuffer ranks;
+
+    /* The number of decades stored for every name. */
+    private final int decades;
+
+    /* Open-addressing hash table of name ids, EMPTY_SLOT marks a free slot. */
+    private final IntBuffer hashIndex;
+
+    /**
+     * Creates columns over existing buffers.  If hashIndex is null, the
+     * index is built from the names.
+     */
+    NameSurferColumns(ByteBuffer nameBytes, IntBuffer nameOffsets, IntBuffer ranks, int decades,
+                      IntBuffer hashIndex) {
+        this.nameBytes = nameBytes;
+        this.nameOffsets = nameOffsets;
+        this.ranks = ranks;
+        this.decades = decades;
+        this.hashIndex = hashIndex != null ? hashIndex : IntBuffer.wrap(buildHashIndex());
+    }
+
+    /**
+     * Returns the number of names stored in the columns.
+     */
+    int size() {
+        return nameOffsets.limit() - 1;
+    }
+
+    /**
+     * Returns the number of decades stored for every name.
+     */
+    int decades() {
+        return decades;
+    }
+
+    /**
+     * Decodes the name with the given id.
+     */
+    String nameAt(int id) {
+        int from = nameOffsets.get(id);
+        byte[] bytes = new byte[nameOffsets.get(id + 1) - from];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = nameBytes.get(from + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the rank of the name with the given id in the given decade.
+     */
+    int rank(int id, int decade) {
+        return ranks.get(id * decades + decade);
+    }
+
+    /**
+     * Returns the best (smallest non-zero) rank of the name with the
+     * given id over all decades, or Integer.MAX_VALUE if it was never
+     * ranked.
+     */
+    int bestRank(int id) {
+        int best = Integer.MAX_VALUE;
+        for (int decade = 0; decade < decades; decade++) {
+            int rank = ranks.get(id * decades + decade);
+            if (rank > 0 && rank < best) {
+                best = rank;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns the position of the first byte of the name with the given
+     * id; the name ends where the name id + 1 starts.
+     */
+    int nameStart(int id) {
+        return nameOffsets.get(id);
+    }
+
+    /**
+     * Returns the name byte at the given position, folded like foldCase.
+     */
+    int foldedByte(int position) {
+        return foldCase(nameBytes.get(position));
+    }
+
+    /**
+     * Returns the id of the given name, ignoring case, or -1 if the
+     * name is not stored in the columns.
+     */
+    int indexOf(String name) {
+        byte[] key = name.getBytes(StandardCharsets.UTF_8);
+        int mask = hashIndex.limit() - 1;
+        int slot = hash(key, 0, key.length) & mask;
+        // At most one round through the table, which a damaged snapshot may have filled.
+        for (int probes = 0; probes <= mask; probes++) {
+            int id = hashIndex.get(slot);
+            if (id == EMPTY_SLOT) {
+                break;
+            }
+            if (compareToName(key, 0, key.length, id) == 0) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Compares the bytes key[from, to) with the stored name with the given
+     * id, independent of case.
+     */
+    int compareToName(byte[] key, int from, int to, int id) {
+        int nameFrom = nameOffsets.get(id);
+        int nameLength = nameOffsets.get(id + 1) - nameFrom;
+        int length = Math.min(to - from, nameLength);
+        for (int i = 0; i < length; i++) {
+            int diff = foldCase(key[from + i]) - foldCase(nameBytes.get(nameFrom + i));
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return (to - from) - nameLength;
+    }
+
+    /**
+     * Returns true if the stored name with the given id starts with the
+     * given bytes, independent of case.
+     */
+    boolean nameStartsWith(int id, byte[] prefix) {
+        int nameFrom = nameOffsets.get(id);
+        if (nameOffsets.get(id + 1) - nameFrom < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (foldCase(prefix[i]) != foldCase(nameBytes.get(nameFrom + i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of bytes of all columns together.
+     */
+    long sizeInBytes() {
+        return nameBytes.limit() + 4L * (nameOffsets.limit() + ranks.limit() + hashIndex.limit());
+    }
+
+    /* Package-private access to the raw columns, used to write snapshots. */
+
+    ByteBuffer nameBytes() {
+        return nameBytes.duplicate();
+    }
+
+    IntBuffer nameOffsets() {
+        return nameOffsets.duplicate();
+    }
+
+    IntBuffer ranks() {
+        return ranks.duplicate();
+    }
+
+    IntBuffer hashIndex() {
+        return hashIndex.duplicate();
+    }
+
+    /**
+     * Builds the hash index with a load factor of at most one half, so
+     * that linear probing stays short.  If the same name occurs twice,
+     * the later id wins, just like a HashMap put would.
+     */
+    private int[] buildHashIndex() {
+        int capacity = Integer.highestOneBit(Math.max(2, size()) * 2 - 1) << 1;
+        int[] table = new int[capacity];
+        Arrays.fill(table, EMPTY_SLOT);
+        int mask = capacity - 1;
+        byte[] name = new byte[64];
+        for (int id = 0; id < size(); id++) {
+            int from = nameOffsets.get(id);
+            int length = nameOffsets.get(id + 1) - from;
+            if (length > name.length) {
+                name = new byte[length];
+            }
+            for (int i = 0; i < length; i++) {
+                name[i] = nameBytes.get(from + i);
+            }
+            int slot = hash(name, 0, length) & mask;
+            while (table[slot] != EMPTY_SLOT) {
+                if (compareToName(name, 0, length, table[slot]) == 0) {
+                    break;
+                }
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = id;
+        }
+        return table;
+    }
+
+    /**
+     * Hashes the bytes in [from, to) with FNV-1a, folding ASCII letters
+     * to lower case first.
+     */
+    static int hash(byte[] bytes, int from, int to) {
+        int h = 0x811C9DC5;
+        for (int i = from; i < to; i++) {
+            h = (h ^ foldCase(bytes[i])) * 0x01000193;
+        }
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Compares the byte ranges [aFrom, aTo) and [bFrom, bTo) the same way
+     * String.compareToIgnoreCase does for ASCII names.
+     */
+    static int compareFolded(byte[] a, int aFrom, int aTo, byte[] b, int bFrom, int bTo) {
+        int length = Math.min(aTo - aFrom, bTo - bFrom);
+        for (int i = 0; i < length; i++) {
+            int diff = foldCase(a[aFrom + i]) - foldCase(b[bFrom + i]);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return (aTo - aFrom) - (bTo - bFrom);
+    }
+
+    /**
+     * Turns an ASCII upper case letter into lower case and every byte
+     * into an unsigned value.
+     */
+    static int foldCase(byte b) {
+        int c = b & 0xFF;
+        return (c >= 'A' && c <= 'Z') ? c + ('a' - 'A') : c;
+    }
+
+
+    /**
+     * Collects names and ranks in file order and turns them into sorted
+     * columns.  A builder is not thread safe; parallel producers should
+     * fill builders of their own and merge them with addAll.
+     */
+    static final class Builder{
+        private final int decades;
+        private byte[] nameBytes = new byte[1 << 12];
+        private int[] nameOffsets = new int[1 << 8];
+        private int[] ranks;
+        private int size;
+
+        /**
+         * Creates an empty builder for names with the given number of decades.
+         */
+        Builder(int decades) {
+            this.decades = decades;
+            this.ranks = new int[nameOffsets.length * decades];
+        }
+
+        /**
+         * Returns the number of names added so far.
+         */
+        int size() {
+            return size;
+        }
+
+        /**
+         * Adds a name and its ranks; rankRow must hold one rank per decade.
+         */
+        void add(String name, int[] rankRow) {
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            add(bytes, 0, bytes.length, rankRow, 0);
+        }
+
+        /**
+         * Adds the name stored in src[from, from + length) together with the
+         * ranks stored in rankRow starting at rankFrom.
+         */
+        void add(byte[] src, int from, int length, int[] rankRow, int rankFrom) {
+            ensureCapacity(length);
+            int start = nameOffsets[size];
+            System.arraycopy(src, from, nameBytes, start, length);
+            System.arraycopy(rankRow, rankFrom, ranks, size * decades, decades);
+            size++;
+            nameOffsets[size] = start + length;
+        }
+
+        /**
+         * Appends all names of another builder after the names of this one.
+         */
+        void addAll(Builder other) {
+            int bytes = other.nameOffsets[other.size];
+            int start = nameOffsets[size];
+            while (size + other.size >= nameOffsets.length) {
+                nameOffsets = Arrays.copyOf(nameOffsets, nameOffsets.length * 2);
+            }
+            if (ranks.length < nameOffsets.length * decades) {
+                ranks = Arrays.copyOf(ranks, nameOffsets.length * decades);
+            }
+            if (start + bytes > nameBytes.length) {
+                nameBytes = Arrays.copyOf(nameBytes, Math.max(start + bytes, nameBytes.length * 2));
+            }
+            System.arraycopy(other.nameBytes, 0, nameBytes, start, bytes);
+            System.arraycopy(other.ranks, 0, ranks, size * decades, other.size * decades);
+            for (int id = 1; id <= other.size; id++) {
+                nameOffsets[size + id] = start + other.nameOffsets[id];
+            }
+            size += other.size;
+        }
+
+        /**
+         * Sorts the collected names independent of case and returns the
+         * resulting columns.  Equal names keep their file order.
+         */
+        NameSurferColumns build() {
+            int[] order = new int[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            long[] prefixes = new long[size];
+            for (int i = 0; i < size; i++) {
+                prefixes[i] = prefixKey(i);
+            }
+            sortByName(order, new int[size], prefixes, 0, size);
+
+            byte[] sortedNames = new byte[nameOffsets[size]];
+            int[] sortedOffsets = new int[size + 1];
+            int[] sortedRanks = new int[size * decades];
+            int position = 0;
+            for (int id = 0; id < size; id++) {
+                int source = order[id];
+                int from = nameOffsets[source];
+                int length = nameOffsets[source + 1] - from;
+                System.arraycopy(nameBytes, from, sortedNames, position, length);
+                System.arraycopy(ranks, source * decades, sortedRanks, id * decades, decades);
+                sortedOffsets[id] = position;
+                position += length;
+            }
+            sortedOffsets[size] = position;
+            return new NameSurferColumns(ByteBuffer.wrap(sortedNames), IntBuffer.wrap(sortedOffsets),
+                    IntBuffer.wrap(sortedRanks), decades, null);
+        }
+
+        /**
+         * Stable merge sort of the ids in order[from, to) by their names.
+         */
+        private void sortByName(int[] order, int[] buffer, long[] prefixes, int from, int to) {
+            if (to - from < 2) {
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            sortByName(order, buffer, prefixes, from, middle);
+            sortByName(order, buffer, prefixes, middle, to);
+            if (compareNames(prefixes, order[middle - 1], order[middle]) <= 0) {
+                return;
+            }
+            System.arraycopy(order, from, buffer, from, to - from);
+            int left = from;
+            int right = middle;
+            for (int i = from; i < to; i++) {
+                if (right >= to || (left < middle && compareNames(prefixes, buffer[left], buffer[right]) <= 0)) {
+                    order[i] = buffer[left++];
+                } else {
+                    order[i] = buffer[right++];
+                }
+            }
+        }
+
+        /**
+         * Compares two names by their prefix keys first and only looks at
+         * the full names when the first eight bytes are equal.
+         */
+        private int compareNames(long[] prefixes, int a, int b) {
+            int byPrefix = Long.compareUnsigned(prefixes[a], prefixes[b]);
+            if (byPrefix != 0) {
+                return byPrefix;
+            }
+            return compareFolded(nameBytes, nameOffsets[a], nameOffsets[a + 1],
+                    nameBytes, nameOffsets[b], nameOffsets[b + 1]);
+        }
+
+        /**
+         * Packs the first eight case-folded bytes of a name into a long, so
+         * that unsigned comparison of two keys orders them like their names.
+         */
+        private long prefixKey(int id) {
+            int from = nameOffsets[id];
+            int to = Math.min(nameOffsets[id + 1], from + 8);
+            long key = 0;
+            for (int i = from; i < from + 8; i++) {
+                key = (key << 8) | (i < to ? foldCase(nameBytes[i]) : 0);
+            }
+            return key;
+        }
+
+        /**
+         * Grows the arrays so that one more name of the given length fits.
+         */
+        private void ensureCapacity(int nameLength) {
+            if (size + 1 >= nameOffsets.length) {
+                nameOffsets = Arrays.copyOf(nameOffsets, nameOffsets.length * 2);
+                ranks = Arrays.copyOf(ranks, nameOffsets.length * decades);
+            }
+            int needed = nameOffsets[size] + nameLength;
+            if (needed > nameBytes.length) {
+                nameBytes = Arrays.copyOf(nameBytes, Math.max(needed, nameBytes.length * 2));
+            }
+        }
+    }
+}
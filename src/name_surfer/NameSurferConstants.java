@@ -25,10 +25,29 @@ public interface NameSurferConstants{
      */
     public static final String NAMES_DATA_FILE = "names-data.txt";
 
+    /**
+     * The suffix appended to a data file name to get its binary snapshot
+     */
+    public static final String SNAPSHOT_SUFFIX = ".snapshot";
+
     /**
      * field length for the name
      */
     static final int NAME_FIELD = 20;
+
+    /**
+     * Milliseconds of typing pause before suggestions are looked up
+     */
+    static final int AUTOCOMPLETE_DELAY = 150;
+
+    /**
+     * The maximum number of suggestions shown under the name field
+     */
+    static final int AUTOCOMPLETE_SIZE = 10;
+    /**
+     * The maximum number of similar names offered for a name that is not found
+     */
+    static final int SIMILAR_SIZE = 5;
     /**
      * The first decade in the database
      */
@@ -57,4 +76,14 @@ public interface NameSurferConstants{
      * Diametr of point on graph
      */
     public static final double POINT_DIAMETER = 4;
+
+    /**
+     * Above this many plotted names the graph draws all series into one image
+     */
+    public static final int LOD_ENTRY_THRESHOLD = 200;
+
+    /**
+     * Milliseconds per frame; the graph lays itself out at most once per frame
+     */
+    public static final int FRAME_TIME = 16;
 }
\ No newline at end of file
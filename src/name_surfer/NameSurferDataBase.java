@@ -11,19 +11,25 @@ package name_surfer;
  * and "ERIC" are the same names.
  */
 
-import acm.util.ErrorException;
-
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
-import java.util.HashMap;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.function.DoubleConsumer;
 
 public class NameSurferDataBase implements NameSurferConstants{
 
-    /* A HashMap that associates names with their corresponding NameSurferEntry objects,
-     * serving as a database for storing and retrieving name popularity data.
+    /* The columnar store that keeps all names and their ranks in a few
+     * primitive arrays, serving as a database for storing and retrieving
+     * name popularity data.
      */
-    private final HashMap<String, NameSurferEntry> nameOfDatabase;
+    private final NameSurferColumns columns;
+
+    /* The prefix index used for autocomplete, built the first time it is needed. */
+    private volatile NameSurferPrefixIndex prefixIndex;
+
+    /* The fuzzy index used for "did you mean" suggestions, built the first time it is needed. */
+    private volatile NameSurferFuzzyIndex fuzzyIndex;
     /* Constructor: NameSurferDataBase(filename) */
 
     /**
@@ -31,22 +37,72 @@ public class NameSurferDataBase implements NameSurferConstants{
      * data in the specified file.  The constructor throws an error
      * exception if the requested file does not exist or if an error
      * occurs as the file is being read.
+     *
+     * A binary snapshot of the data is kept next to the file.  If the
+     * snapshot is at least as new as the file, it is memory-mapped
+     * instead of parsing the text; otherwise the text is parsed and the
+     * snapshot is rebuilt.
      */
     public NameSurferDataBase(String filename) {
-        nameOfDatabase = new HashMap<>();
+        this(filename, progress -> {
+        });
+    }
+
+    /* Constructor: NameSurferDataBase(filename, progress) */
+
+    /**
+     * Creates a new NameSurferDataBase like NameSurferDataBase(filename)
+     * and reports how far the loading got, from 0 to 1, to the progress
+     * consumer.  The consumer may be called from other threads.
+     */
+    public NameSurferDataBase(String filename, DoubleConsumer progress) {
+        this(filename, NDECADES, progress);
+    }
+
+    /* Constructor: NameSurferDataBase(filename, decades, progress) */
+
+    /**
+     * Creates a new NameSurferDataBase for a file whose lines hold the
+     * given number of ranks, such as a shard that covers fewer or more
+     * decades than NDECADES.  Decade indexes of its entries count from
+     * the first decade of the file.
+     */
+    public NameSurferDataBase(String filename, int decades, DoubleConsumer progress) {
+        columns = openOrLoad(Paths.get(filename), Paths.get(filename + SNAPSHOT_SUFFIX), decades, progress);
+        progress.accept(1.0);
+    }
+
+    /**
+     * Opens the snapshot if it is fresh and valid, and otherwise parses
+     * the text file and writes a new snapshot for the next start.
+     */
+    private static NameSurferColumns openOrLoad(Path source, Path snapshot, int decades,
+                                                DoubleConsumer progress) {
         try {
-            BufferedReader br = new BufferedReader(new FileReader(filename));
-            while (true) {
-                String line = br.readLine();
-                if (line == null) break;
-                NameSurferEntry entry = new NameSurferEntry(line);
-                nameOfDatabase.put(entry.getName().toLowerCase(), entry);
+            if (NameSurferSnapshot.isFresh(snapshot, source)) {
+                NameSurferColumns opened = NameSurferSnapshot.open(snapshot);
+                if (opened.decades() == decades) {
+                    return opened;
+                }
+                System.err.println("Ignoring snapshot with " + opened.decades() + " decades: " + snapshot);
             }
-            br.close();
         } catch (IOException e) {
-            System.err.println("Error reading file: " + e.getMessage());
+            System.err.println("Ignoring snapshot: " + e.getMessage());
+        }
 
+        NameSurferColumns loaded;
+        try {
+            loaded = NameSurferLoader.load(source.toString(), decades, progress);
+        } catch (IOException e) {
+            System.err.println("Error reading file: " + e.getMessage());
+            return new NameSurferColumns.Builder(decades).build();
+        }
+        try {
+            NameSurferSnapshot.write(loaded, snapshot);
+        } catch (IOException e) {
+            System.err.println("Error writing snapshot: " + e.getMessage());
         }
+        return loaded;
     }
 
     /* Method: findEntry(name) */
@@ -54,9 +110,89 @@ public class NameSurferDataBase implements NameSurferConstants{
     /**
      * Returns the NameSurferEntry associated with this name, if one
      * exists.  If the name does not appear in the database, this
-     * method returns null.
+     * method returns null.  The entry is created on demand as a view
+     * of the database columns.
      */
     public NameSurferEntry findEntry(String name) {
-        return nameOfDatabase.get(name.toLowerCase());
+        int id = columns.indexOf(name);
+        return id < 0 ? null : new NameSurferEntry(columns, id);
+    }
+
+    /**
+     * Returns the columns behind this database, for the query classes
+     * of this package.
+     */
+    NameSurferColumns columns() {
+        return columns;
+    }
+
+    /* Method: findCompletions(prefix, limit) */
+
+    /**
+     * Returns up to limit entries whose names start with the given
+     * prefix, ignoring case, with the most popular names first.  The
+     * prefix index is built on the first call, so that call is slower
+     * than the ones after it.
+     */
+    public List<NameSurferEntry> findCompletions(String prefix, int limit) {
+        NameSurferPrefixIndex index = prefixIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = prefixIndex;
+                if (index == null) {
+                    index = new NameSurferPrefixIndex(columns);
+                    prefixIndex = index;
+                }
+            }
+        }
+        return index.complete(prefix, limit);
+    }
+
+    /* Method: findSimilar(name, limit) */
+
+    /**
+     * Returns up to limit entries whose names are close to the given
+     * one, for names that are not in the database: a few typing errors
+     * away, or sounding alike.  The closest and most popular names come
+     * first.
+     */
+    public List<NameSurferEntry> findSimilar(String name, int limit) {
+        return fuzzyIndex().similar(name, limit);
+    }
+
+    /**
+     * Returns the fuzzy index, building it on the first call.  Calling
+     * this once in the background right after loading keeps the first
+     * findSimilar fast.
+     */
+    NameSurferFuzzyIndex fuzzyIndex() {
+        NameSurferFuzzyIndex index = fuzzyIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = fuzzyIndex;
+                if (index == null) {
+                    index = new NameSurferFuzzyIndex(columns);
+                    fuzzyIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Returns an estimate of the memory the database takes, in bytes:
+     * the columns and the indexes built so far.
+     */
+    long sizeInBytes() {
+        long size = columns.sizeInBytes();
+        NameSurferPrefixIndex prefix = prefixIndex;
+        if (prefix != null) {
+            size += prefix.sizeInBytes();
+        }
+        NameSurferFuzzyIndex fuzzy = fuzzyIndex;
+        if (fuzzy != null) {
+            size += fuzzy.sizeInBytes();
+        }
+        return size;
     }
-}
\ No newline at end of file
+}
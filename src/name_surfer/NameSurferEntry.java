@@ -13,8 +13,14 @@ import java.util.*;
 public class NameSurferEntry implements NameSurferConstants{
     //The name associated with this NameSurferEntry object, representing the baby name
     private final String name;
-    //An array of integers representing the popularity ratings of baby names
-    private final int[] ranks = new int[NDECADES];
+    //An array of integers representing the popularity ratings of baby names, null for database views
+    private final int[] ranks;
+    //The columns this entry is a view of, or null if the entry owns its ranks
+    private final NameSurferColumns columns;
+    //The id of the name inside columns
+    private final int id;
+    //The decade of the first rank, counted from START_DECADE like the decades of getRank
+    private final int firstDecade;
 
     /* Constructor: NameSurferEntry(line) */
 
@@ -27,12 +33,95 @@ public class NameSurferEntry implements NameSurferConstants{
     public NameSurferEntry(String line) {
         String[] parts = line.split(" ");
         name = parts[0];
+        ranks = new int[NDECADES];
+        columns = null;
+        id = -1;
+        firstDecade = 0;
 
         for (int i = 1; i <= NDECADES; i++) {
             ranks[i - 1] = Integer.parseInt(parts[i]);
         }
     }
 
+    /* Constructor: NameSurferEntry(columns, id) */
+
+    /**
+     * Creates a lightweight view of the name with the given id in the
+     * database columns.  The ranks are not copied; they are read from
+     * the columns whenever getRank is called.
+     */
+    NameSurferEntry(NameSurferColumns columns, int id) {
+        this.name = columns.nameAt(id);
+        this.ranks = null;
+        this.columns = columns;
+        this.id = id;
+        this.firstDecade = 0;
+    }
+
+    /* Constructor: NameSurferEntry(name, ranks) */
+
+    /**
+     * Creates an entry that owns the given ranks, one for each decade.
+     */
+    NameSurferEntry(String name, int[] ranks) {
+        this(name, 0, ranks);
+    }
+
+    /* Constructor: NameSurferEntry(name, firstDecade, ranks) */
+
+    /**
+     * Creates an entry that owns the given ranks, one for each decade
+     * from firstDecade on.  The first decade counts from START_DECADE
+     * and may be negative for data older than the graph.
+     */
+    NameSurferEntry(String name, int firstDecade, int[] ranks) {
+        this.name = name;
+        this.ranks = ranks;
+        this.columns = null;
+        this.id = -1;
+        this.firstDecade = firstDecade;
+    }
+
+    /* Method: detach() */
+
+    /**
+     * Returns an entry with the same name and ranks that no longer reads
+     * from the database columns.  Detaching an entry on a background
+     * thread keeps the Swing thread from touching a memory-mapped
+     * snapshot, where the first access to a page may have to wait for
+     * the disk.
+     */
+    NameSurferEntry detach() {
+        if (columns == null) {
+            return this;
+        }
+        int[] copy = new int[decades()];
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = getRank(firstDecade + i);
+        }
+        return new NameSurferEntry(name, firstDecade, copy);
+    }
+
+    /* Method: decades() */
+
+    /**
+     * Returns the number of decades this entry has ranks for, which
+     * is the number of decades of the database it comes from.
+     */
+    int decades() {
+        return columns == null ? ranks.length : columns.decades();
+    }
+
+    /* Method: firstDecade() */
+
+    /**
+     * Returns the decade of the first rank of this entry, counted from
+     * START_DECADE; 0 unless the entry was merged from shards.
+     */
+    int firstDecade() {
+        return firstDecade;
+    }
+
     /* Method: getName() */
 
     /**
@@ -49,11 +138,15 @@ public class NameSurferEntry implements NameSurferConstants{
      * decade.  The decade value is an integer indicating how many
      * decades have passed since the first year in the database,
      * which is given by the constant START_DECADE.  If a name does
-     * not appear in a decade, the rank value is 0.
+     * not appear in a decade, or the entry has no rank for the decade,
+     * such as a decade before its first decade, the rank value is 0.
      */
     public int getRank(int decade) {
-        return ranks[decade];
-
+        int i = decade - firstDecade;
+        if (i < 0 || i >= decades()) {
+            return 0;
+        }
+        return columns == null ? ranks[i] : columns.rank(id, i);
     }
 
     /* Method: toString() */
@@ -63,7 +156,11 @@ public class NameSurferEntry implements NameSurferConstants{
      * NameSurferEntry.
      */
     public String toString() {
-        String formattedRanks = Arrays.toString(ranks).replaceAll(",", " ");
+        int[] values = new int[decades()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = getRank(firstDecade + i);
+        }
+        String formattedRanks = Arrays.toString(values).replaceAll(",", " ");
         return String.format("%s %s", name, formattedRanks);
     }
 }
@@ -0,0 +1,353 @@
+package name_surfer;
+
+/*
+ * File: NameSurferExporter.java
+ * -----------------------------
+ * This class draws NameSurfer charts without a window, for reports
+ * that are generated in batches.  A chart is drawn either into a
+ * BufferedImage that is saved as PNG, or streamed out as SVG text.
+ * Both use NameSurferLayout, so a chart looks like the interactive
+ * graph of the same size: the grid with its decade labels, and for
+ * every name a line through its ranks, a label with name and rank at
+ * every decade and a point on every rank.
+ *
+ * Usage: java name_surfer.NameSurferExporter dataFile outputDir png|svg chartsFile
+ *
+ * Every line of the charts file lists the names of one chart, and the
+ * chart is saved under the names joined by '-', in lower case and with
+ * every character other than a-z, 0-9, '_' and '-' replaced by '_'.
+ */
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.*;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class NameSurferExporter implements NameSurferConstants{
+
+    /**
+     * The file formats a chart can be saved in.
+     */
+    public enum Format{
+        PNG, SVG;
+
+        String extension() {
+            return "." + name().toLowerCase();
+        }
+    }
+
+    /* The longest file name a chart gets, without its extension and number. */
+    private static final int MAX_FILE_NAME = 200;
+
+    /* The PNG compression quality; higher values compress faster and less. */
+    private static final float PNG_COMPRESSION_QUALITY = 0.75f;
+
+    /* The font of the decade labels, like the one of the graph. */
+    private static final Font DECADE_FONT = new Font("Arial", Font.PLAIN, 18);
+
+    private final NameSurferDataBase dataBase;
+    private final NameSurferLayout layout;
+    private final Font labelFont;
+
+    /* Constructor: NameSurferExporter(dataBase, width, height) */
+
+    /**
+     * Creates an exporter that draws charts of the given size with the
+     * names of the given database.
+     */
+    public NameSurferExporter(NameSurferDataBase dataBase, int width, int height) {
+        this.dataBase = dataBase;
+        this.layout = new NameSurferLayout(width, height);
+        this.labelFont = new Font("Arial", Font.BOLD, layout.labelFontSize());
+    }
+
+    /* Method: exportCharts(charts, directory, format, threads) */
+
+    /**
+     * Saves one file per chart into the directory, writing up to threads
+     * files at the same time.  Each chart is a list of names; names that
+     * are not in the database are left out of it.  Returns the written
+     * files in the order of the charts.
+     */
+    public List<Path> exportCharts(List<List<String>> charts, Path directory, Format format, int threads)
+            throws IOException {
+        Files.createDirectories(directory);
+        Path root = directory.toAbsolutePath().normalize();
+        Set<String> used = new HashSet<>();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            List<Future<Path>> written = new ArrayList<>(charts.size());
+            for (List<String> names : charts) {
+                Path file = root.resolve(fileName(names, used) + format.extension()).normalize();
+                if (!file.startsWith(root)) {
+                    throw new IOException("Chart file outside the output directory: " + file);
+                }
+                written.add(pool.submit(() -> {
+                    export(findEntries(names), file, format);
+                    return file;
+                }));
+            }
+            List<Path> files = new ArrayList<>(written.size());
+            for (Future<Path> future : written) {
+                files.add(future.get());
+            }
+            return files;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Export interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns the file name of a chart, without extension: its names
+     * joined by '-', folded to lower case so that names that differ only
+     * in case cannot overwrite each other on a case-insensitive file
+     * system, and with anything but a-z, 0-9, '_' and '-' replaced by
+     * '_', so that a name cannot leave the output directory.  A name
+     * already in used gets a number appended; the result is added to used.
+     */
+    static String fileName(List<String> names, Set<String> used) {
+        StringBuilder name = new StringBuilder();
+        for (String part : names) {
+            if (name.length() > 0) {
+                name.append('-');
+            }
+            for (char c : part.toLowerCase().toCharArray()) {
+                boolean allowed = (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '_' || c == '-';
+                name.append(allowed ? c : '_');
+            }
+        }
+        if (name.length() > MAX_FILE_NAME) {
+            name.setLength(MAX_FILE_NAME);
+        }
+        if (name.length() == 0) {
+            name.append("chart");
+        }
+        String unique = name.toString();
+        for (int i = 2; !used.add(unique); i++) {
+            unique = name + "-" + i;
+        }
+        return unique;
+    }
+
+    /**
+     * Looks up the entries of a chart, reporting names that are missing.
+     */
+    private List<NameSurferEntry> findEntries(List<String> names) {
+        List<NameSurferEntry> entries = new ArrayList<>(names.size());
+        for (String name : names) {
+            NameSurferEntry entry = dataBase.findEntry(name);
+            if (entry != null) {
+                entries.add(entry);
+            } else {
+                System.err.println("Skipping unknown name: " + name);
+            }
+        }
+        return entries;
+    }
+
+    /* Method: export(entries, file, format) */
+
+    /**
+     * Saves the chart of the given entries to the file.
+     */
+    public void export(List<NameSurferEntry> entries, Path file, Format format) throws IOException {
+        if (format == Format.PNG) {
+            writePng(render(entries), file);
+        } else {
+            try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                writeSvg(entries, out);
+            }
+        }
+    }
+
+    /**
+     * Saves the image as PNG with a fast compression level.  Encoding
+     * takes most of the time of a chart, and the default level is about
+     * twice as slow for files that are only a little smaller.
+     */
+    private static void writePng(BufferedImage image, Path file) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("png").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(PNG_COMPRESSION_QUALITY);
+        Files.deleteIfExists(file);
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(file.toFile())) {
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    /* Method: render(entries) */
+
+    /**
+     * Draws the chart of the given entries into a new image with a white
+     * background.
+     */
+    public BufferedImage render(List<NameSurferEntry> entries) {
+        BufferedImage image = new BufferedImage(Math.max(1, layout.width()), Math.max(1, layout.height()),
+                BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, image.getWidth(), image.getHeight());
+
+        // The grid: margin lines, decade lines and decade labels.
+        g.setColor(Color.BLACK);
+        g.setFont(DECADE_FONT);
+        int descent = g.getFontMetrics().getDescent();
+        drawLine(g, 0, GRAPH_MARGIN_SIZE, layout.width(), GRAPH_MARGIN_SIZE);
+        drawLine(g, 0, layout.height() - GRAPH_MARGIN_SIZE, layout.width(), layout.height() - GRAPH_MARGIN_SIZE);
+        for (int i = 0; i < NDECADES; i++) {
+            double x = layout.decadeX(i);
+            drawLine(g, x, 0, x, layout.height());
+            g.drawString(NameSurferLayout.decadeText(i), (float) x, layout.height() - descent);
+        }
+
+        // The series, one color per entry like on the graph.
+        g.setFont(labelFont);
+        for (int e = 0; e < entries.size(); e++) {
+            NameSurferEntry entry = entries.get(e);
+            g.setColor(NameSurferGraphResources.color(e));
+            for (int j = 0; j < NDECADES; j++) {
+                double x = layout.decadeX(j);
+                double y = layout.rankY(entry.getRank(j));
+                if (j != 0) {
+                    drawLine(g, layout.decadeX(j - 1), layout.rankY(entry.getRank(j - 1)), x, y);
+                }
+                g.drawString(label(entry, j), (float) x, (float) y);
+                g.fill(new Ellipse2D.Double(x - POINT_DIAMETER / 2, y - POINT_DIAMETER / 2,
+                        POINT_DIAMETER, POINT_DIAMETER));
+            }
+        }
+        g.dispose();
+        return image;
+    }
+
+    private static void drawLine(Graphics2D g, double x1, double y1, double x2, double y2) {
+        g.draw(new Line2D.Double(x1, y1, x2, y2));
+    }
+
+    /* Method: writeSvg(entries, out) */
+
+    /**
+     * Streams the chart of the given entries as an SVG document.
+     */
+    public void writeSvg(List<NameSurferEntry> entries, Writer out) throws IOException {
+        out.write("<svg xmlns=\"http://www.w3.org/2000/svg\" xml:space=\"preserve\" width=\"" + layout.width()
+                + "\" height=\"" + layout.height() + "\">\n");
+        out.write("<rect width=\"100%\" height=\"100%\" fill=\"white\"/>\n");
+
+        // The grid: margin lines, decade lines and decade labels.
+        out.write("<g stroke=\"black\">\n");
+        svgLine(out, 0, GRAPH_MARGIN_SIZE, layout.width(), GRAPH_MARGIN_SIZE);
+        svgLine(out, 0, layout.height() - GRAPH_MARGIN_SIZE, layout.width(), layout.height() - GRAPH_MARGIN_SIZE);
+        for (int i = 0; i < NDECADES; i++) {
+            svgLine(out, layout.decadeX(i), 0, layout.decadeX(i), layout.height());
+        }
+        out.write("</g>\n<g font-family=\"Arial\" font-size=\"" + DECADE_FONT.getSize() + "\">\n");
+        for (int i = 0; i < NDECADES; i++) {
+            out.write("<text x=\"" + layout.decadeX(i) + "\" y=\"" + layout.height() + "\" dominant-baseline=\"text-after-edge\">"
+                    + NameSurferLayout.decadeText(i) + "</text>\n");
+        }
+        out.write("</g>\n");
+
+        // The series, one group per entry in the color it has on the graph.
+        for (int e = 0; e < entries.size(); e++) {
+            NameSurferEntry entry = entries.get(e);
+            Color color = NameSurferGraphResources.color(e);
+            String rgb = String.format("#%06x", color.getRGB() & 0xFFFFFF);
+            out.write("<g fill=\"" + rgb + "\" font-family=\"Arial\" font-weight=\"bold\" font-size=\""
+                    + labelFont.getSize() + "\">\n<polyline fill=\"none\" stroke=\"" + rgb + "\" points=\"");
+            for (int j = 0; j < NDECADES; j++) {
+                out.write((j == 0 ? "" : " ") + layout.decadeX(j) + "," + layout.rankY(entry.getRank(j)));
+            }
+            out.write("\"/>\n");
+            for (int j = 0; j < NDECADES; j++) {
+                double x = layout.decadeX(j);
+                double y = layout.rankY(entry.getRank(j));
+                out.write("<text x=\"" + x + "\" y=\"" + y + "\">" + escape(label(entry, j)) + "</text>\n");
+                out.write("<circle cx=\"" + x + "\" cy=\"" + y + "\" r=\"" + POINT_DIAMETER / 2 + "\"/>\n");
+            }
+            out.write("</g>\n");
+        }
+        out.write("</svg>\n");
+    }
+
+    private static void svgLine(Writer out, double x1, double y1, double x2, double y2) throws IOException {
+        out.write("<line x1=\"" + x1 + "\" y1=\"" + y1 + "\" x2=\"" + x2 + "\" y2=\"" + y2 + "\"/>\n");
+    }
+
+    /**
+     * Returns the label of an entry at a decade: the name followed by the
+     * rank, the way the graph places the rank label after the name.
+     */
+    private static String label(NameSurferEntry entry, int decade) {
+        return entry.getName() + NameSurferLayout.rankText(entry.getRank(decade));
+    }
+
+    private static String escape(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+
+    /**
+     * Exports the charts listed in a file without opening a window.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 4) {
+            System.err.println("Usage: NameSurferExporter dataFile outputDir png|svg chartsFile");
+            System.exit(2);
+        }
+        System.setProperty("java.awt.headless", "true");
+        Format format = Format.valueOf(args[2].toUpperCase());
+        List<List<String>> charts = new ArrayList<>();
+        for (String line : Files.readAllLines(Paths.get(args[3]), StandardCharsets.UTF_8)) {
+            List<String> names = new ArrayList<>();
+            for (String name : line.trim().split("[\\s,]+")) {
+                if (!name.isEmpty()) {
+                    names.add(name);
+                }
+            }
+            if (!names.isEmpty()) {
+                charts.add(names);
+            }
+        }
+
+        long start = System.nanoTime();
+        NameSurferExporter exporter = new NameSurferExporter(new NameSurferDataBase(args[0]),
+                APPLICATION_WIDTH, APPLICATION_HEIGHT);
+        List<Path> files = exporter.exportCharts(charts, Paths.get(args[1]), format,
+                Runtime.getRuntime().availableProcessors());
+        System.out.printf("Wrote %d charts to %s in %d ms%n", files.size(), args[1],
+                (System.nanoTime() - start) / 1_000_000);
+    }
+}
@@ -0,0 +1,336 @@
+package name_surfer;
+
+/*
+ * File: NameSurferFuzzyIndex.java
+ * -------------------------------
+ * This class finds the names closest to a mistyped one without
+ * comparing it to every name in the database.  It keeps two indexes
+ * over the columns:
+ *
+ *  - Soundex buckets: the ids of all names sorted by their Soundex
+ *    code, so that names which sound alike are one binary search away.
+ *  - Trigram postings: for every (hashed) three-letter piece of the
+ *    names padded at both ends, the ids of the names that contain it.
+ *    A name within edit distance k of the query shares at least
+ *    length - 3k of the query's trigrams, so only names that share
+ *    enough of them are compared at all.
+ *
+ * The remaining candidates are checked with a bounded Levenshtein
+ * distance, and the matches are ranked by distance, with a bonus for
+ * names that sound alike, and then by popularity.
+ */
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+final class NameSurferFuzzyIndex{
+
+    /* Pads the names at both ends when trigrams are taken; names never contain it. */
+    private static final int PAD = 0;
+
+    /* The Soundex digit of every letter a to z, 0 for vowels and h, w, y. */
+    private static final byte[] SOUNDEX_DIGITS = "01230120022455012623010202".getBytes(StandardCharsets.US_ASCII);
+
+    private final NameSurferColumns columns;
+
+    /* The distinct Soundex codes of all names in ascending order. */
+    private final int[] soundexCodes;
+
+    /* The ids of the names with soundexCodes[i] are soundexIds[soundexStarts[i]] up to soundexStarts[i + 1]. */
+    private final int[] soundexStarts;
+    private final int[] soundexIds;
+
+    /* The ids of the names with a trigram in bucket b are postings[postingStarts[b]] up to postingStarts[b + 1]. */
+    private final int[] postingStarts;
+    private final int[] postings;
+
+    /* The number of trigram buckets minus one; the number is a power of two. */
+    private final int bucketMask;
+
+    /* Per-thread counts of shared trigrams by id, all 0 between calls of similar. */
+    private final ThreadLocal<int[]> sharedCounts;
+
+    /**
+     * Builds both indexes over the given columns.  This takes time
+     * linear in the total length of the names.
+     */
+    NameSurferFuzzyIndex(NameSurferColumns columns) {
+        this.columns = columns;
+        int size = columns.size();
+        this.sharedCounts = ThreadLocal.withInitial(() -> new int[size]);
+
+        // Soundex buckets: sort (code, id) pairs and cut them into runs of equal codes.
+        long[] keys = new long[size];
+        for (int id = 0; id < size; id++) {
+            keys[id] = ((long) soundex(columns, id) << 32) | id;
+        }
+        Arrays.sort(keys);
+        int[] codes = new int[size];
+        int[] starts = new int[size + 1];
+        soundexIds = new int[size];
+        int distinct = 0;
+        for (int i = 0; i < size; i++) {
+            int code = (int) (keys[i] >>> 32);
+            if (distinct == 0 || codes[distinct - 1] != code) {
+                codes[distinct] = code;
+                starts[distinct++] = i;
+            }
+            soundexIds[i] = (int) keys[i];
+        }
+        starts[distinct] = size;
+        soundexCodes = Arrays.copyOf(codes, distinct);
+        soundexStarts = Arrays.copyOf(starts, distinct + 1);
+
+        // Trigram postings: count the ids of every bucket, then fill them in.
+        int buckets = Integer.highestOneBit(Math.max(1024, Math.min(size, 1 << 22)) - 1) << 1;
+        bucketMask = buckets - 1;
+        postingStarts = new int[buckets + 1];
+        int[] nameBuckets = new int[16];
+        for (int id = 0; id < size; id++) {
+            nameBuckets = nameTrigrams(id, nameBuckets);
+            for (int i = 1; i <= nameBuckets[0]; i++) {
+                postingStarts[nameBuckets[i] + 1]++;
+            }
+        }
+        for (int b = 0; b < buckets; b++) {
+            postingStarts[b + 1] += postingStarts[b];
+        }
+        postings = new int[postingStarts[buckets]];
+        int[] fill = Arrays.copyOf(postingStarts, buckets);
+        for (int id = 0; id < size; id++) {
+            nameBuckets = nameTrigrams(id, nameBuckets);
+            for (int i = 1; i <= nameBuckets[0]; i++) {
+                postings[fill[nameBuckets[i]]++] = id;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of bytes the index takes, without the columns
+     * and the per-thread scratch counts.
+     */
+    long sizeInBytes() {
+        return 4L * (soundexCodes.length + soundexStarts.length + soundexIds.length
+                + postingStarts.length + postings.length);
+    }
+
+    /* Method: similar(name, limit) */
+
+    /**
+     * Returns up to limit names that are close to the given one: within
+     * one edit for names of up to four letters and two edits for longer
+     * ones, or one edit more if they sound alike.  The closest names come
+     * first, and names equally close are ordered by their best rank.
+     */
+    List<NameSurferEntry> similar(String name, int limit) {
+        List<NameSurferEntry> result = new ArrayList<>();
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        int[] query = new int[bytes.length];
+        for (int i = 0; i < bytes.length; i++) {
+            query[i] = NameSurferColumns.foldCase(bytes[i]);
+        }
+        if (limit <= 0 || query.length == 0 || columns.size() == 0) {
+            return result;
+        }
+        int maxDistance = query.length <= 4 ? 1 : 2;
+
+        // Count the trigrams every name shares with the query; -1 marks names already checked.
+        // The counts array is reused, so every id set in it is kept in touched and reset at the end.
+        int[] shared = sharedCounts.get();
+        int[] touched = new int[64];
+        int touchedCount = 0;
+        List<int[]> matches = new ArrayList<>();
+        try {
+            int[] queryBuckets = trigramBuckets(query, query.length, new int[query.length + 1]);
+            for (int i = 1; i <= queryBuckets[0]; i++) {
+                int bucket = queryBuckets[i];
+                for (int p = postingStarts[bucket]; p < postingStarts[bucket + 1]; p++) {
+                    int id = postings[p];
+                    if (shared[id]++ == 0) {
+                        touched = push(touched, touchedCount++, id);
+                    }
+                }
+            }
+
+            int[] row = new int[query.length + 1];
+            int[] previous = new int[query.length + 1];
+            int code = soundex(query, query.length);
+            int bucket = Arrays.binarySearch(soundexCodes, code);
+            if (code != 0 && bucket >= 0) {
+                for (int i = soundexStarts[bucket]; i < soundexStarts[bucket + 1]; i++) {
+                    int id = soundexIds[i];
+                    if (shared[id] == 0) {
+                        touched = push(touched, touchedCount++, id);
+                    }
+                    shared[id] = -1;
+                    check(query, id, maxDistance + 1, true, matches, row, previous);
+                }
+            }
+            // An edit changes at most three trigrams, so it can take at most three distinct
+            // buckets away; counting distinct buckets, a repeated trigram counts only once.
+            int needed = Math.max(1, queryBuckets[0] - 3 * maxDistance);
+            for (int i = 0; i < touchedCount; i++) {
+                int id = touched[i];
+                if (shared[id] >= needed) {
+                    check(query, id, maxDistance, false, matches, row, previous);
+                }
+            }
+        } finally {
+            for (int i = 0; i < touchedCount; i++) {
+                shared[touched[i]] = 0;
+            }
+        }
+
+        // Each match is {score, best rank, id}; a lower score is closer.
+        matches.sort((a, b) -> a[0] != b[0] ? Integer.compare(a[0], b[0])
+                : a[1] != b[1] ? Integer.compare(a[1], b[1]) : Integer.compare(a[2], b[2]));
+        for (int i = 0; i < matches.size() && i < limit; i++) {
+            result.add(new NameSurferEntry(columns, matches.get(i)[2]));
+        }
+        return result;
+    }
+
+    /**
+     * Stores id at position count of the list, growing the list if it is
+     * full, and returns the list.
+     */
+    private static int[] push(int[] list, int count, int id) {
+        if (count == list.length) {
+            list = Arrays.copyOf(list, count * 2);
+        }
+        list[count] = id;
+        return list;
+    }
+
+    /**
+     * Adds the name with the given id to the matches if it is within
+     * maxDistance edits of the query.  Names that sound like the query
+     * score half an edit better than others.
+     */
+    private void check(int[] query, int id, int maxDistance, boolean soundsAlike,
+                       List<int[]> matches, int[] row, int[] previous) {
+        int from = columns.nameStart(id);
+        int length = columns.nameStart(id + 1) - from;
+        if (Math.abs(length - query.length) > maxDistance) {
+            return;
+        }
+        int distance = distance(query, from, length, maxDistance, row, previous);
+        if (distance <= maxDistance) {
+            matches.add(new int[]{2 * distance - (soundsAlike ? 1 : 0), columns.bestRank(id), id});
+        }
+    }
+
+    /**
+     * Returns the Levenshtein distance between the query and the stored
+     * name at [from, from + length), or maxDistance + 1 as soon as it is
+     * clear that the distance is larger than maxDistance.
+     */
+    private int distance(int[] query, int from, int length, int maxDistance, int[] row, int[] previous) {
+        for (int i = 0; i <= query.length; i++) {
+            previous[i] = i;
+        }
+        for (int j = 1; j <= length; j++) {
+            int c = columns.foldedByte(from + j - 1);
+            row[0] = j;
+            int best = row[0];
+            for (int i = 1; i <= query.length; i++) {
+                int substitute = previous[i - 1] + (query[i - 1] == c ? 0 : 1);
+                row[i] = Math.min(substitute, Math.min(previous[i], row[i - 1]) + 1);
+                best = Math.min(best, row[i]);
+            }
+            if (best > maxDistance) {
+                return maxDistance + 1;
+            }
+            int[] swap = previous;
+            previous = row;
+            row = swap;
+        }
+        return previous[query.length];
+    }
+
+    /**
+     * Returns the trigram buckets of the stored name with the given id,
+     * in the format of trigramBuckets.
+     */
+    private int[] nameTrigrams(int id, int[] buckets) {
+        int from = columns.nameStart(id);
+        int length = columns.nameStart(id + 1) - from;
+        int[] name = new int[length];
+        for (int i = 0; i < length; i++) {
+            name[i] = columns.foldedByte(from + i);
+        }
+        return trigramBuckets(name, length, buckets.length > length ? buckets : new int[length + 1]);
+    }
+
+    /**
+     * Writes the distinct trigram buckets of the folded name, padded
+     * with one PAD on each side, into buckets[1..]; buckets[0] holds
+     * their number.  A name of n letters has n trigrams.
+     */
+    private int[] trigramBuckets(int[] name, int length, int[] buckets) {
+        int count = 0;
+        for (int i = -1; i + 1 < length; i++) {
+            int a = i < 0 ? PAD : name[i];
+            int b = name[i + 1];
+            int c = i + 2 < length ? name[i + 2] : PAD;
+            int bucket = mix((a << 16) | (b << 8) | c) & bucketMask;
+            boolean seen = false;
+            for (int k = 1; k <= count && !seen; k++) {
+                seen = buckets[k] == bucket;
+            }
+            if (!seen) {
+                buckets[++count] = bucket;
+            }
+        }
+        buckets[0] = count;
+        return buckets;
+    }
+
+    /* Spreads the trigram bits over the whole int (the finalizer of MurmurHash3). */
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        return h ^ (h >>> 16);
+    }
+
+    private static int soundex(NameSurferColumns columns, int id) {
+        int from = columns.nameStart(id);
+        int length = columns.nameStart(id + 1) - from;
+        int[] name = new int[length];
+        for (int i = 0; i < length; i++) {
+            name[i] = columns.foldedByte(from + i);
+        }
+        return soundex(name, length);
+    }
+
+    /**
+     * Returns the American Soundex code of the folded name, packed as
+     * the first letter followed by three digits, one per byte.  Letters
+     * other than a to z are skipped; a name without any letter gets 0.
+     */
+    static int soundex(int[] name, int length) {
+        int code = 0;
+        int digits = 0;
+        int previous = 0;
+        for (int i = 0; i < length && digits < 3; i++) {
+            int c = name[i];
+            if (c < 'a' || c > 'z') {
+                continue;
+            }
+            int digit = SOUNDEX_DIGITS[c - 'a'] - '0';
+            if (code == 0) {
+                code = c << 24;
+            } else if (c == 'h' || c == 'w') {
+                continue;
+            } else if (digit != 0 && digit != previous) {
+                code |= digit << (16 - 8 * digits++);
+            }
+            previous = digit;
+        }
+        return code;
+    }
+}
@@ -7,13 +7,30 @@ package name_surfer;
  * names is drawn. This class is responsible for updating
  * (redrawing) the graphs whenever the list of entries changes
  * or the window is resized.
+ *
+ * The graph is kept in retained mode: the graphical objects of the
+ * grid and of every entry are created once and only moved and
+ * rescaled when the canvas size changes.  With more entries than the
+ * level-of-detail threshold, the entries are drawn into a single
+ * image layer instead of getting objects of their own.
+ *
+ * Layouts are worked out and the series layer is drawn on a renderer
+ * thread, one request after another; the Swing thread only puts the
+ * finished image on the canvas and moves the objects to the places the
+ * renderer computed.
  */
 
 import acm.graphics.*;
 
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 import java.awt.event.*;
+import java.awt.image.BufferedImage;
 import java.util.*;
 import java.awt.*;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class NameSurferGraph extends GCanvas
         implements NameSurferConstants, ComponentListener{
@@ -23,248 +40,489 @@ public class NameSurferGraph extends GCanvas
      */
     private final ArrayList<NameSurferEntry> entryList = new ArrayList<>();
 
+    /**
+     * The graphical objects of every entry, as long as the graph is not
+     * drawn through the series layer.
+     */
+    private final ArrayList<EntryPlot> plots = new ArrayList<>();
+
     /**
      * A set that keeps track of added names to prevent duplicates in the entry list.
      */
     private final Set<String> addedNames = new HashSet<>();
 
+    /**
+     * The vertical decade lines and their labels, created once.
+     */
+    private final GLine[] decadeLines = new GLine[NDECADES];
+    private final GLabel[] decadeLabels = new GLabel[NDECADES];
+
+    /**
+     * The horizontal lines at the top and bottom margins, created once.
+     */
+    private final GLine topLine = new GLine(0, 0, 0, 0);
+    private final GLine bottomLine = new GLine(0, 0, 0, 0);
+
+    /**
+     * Coalesces bursts of resize events into at most one layout per frame.
+     */
+    private final Timer layoutTimer = new Timer(FRAME_TIME, e -> update());
+
+    /**
+     * Computes placements and draws the series layer away from the Swing
+     * thread.  Requests run in the order they were made, and their results
+     * reach the Swing thread in the same order.
+     */
+    private final ExecutorService renderer = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "NameSurfer renderer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Cached fonts, colors and text widths of the labels.  Only used by the renderer.
+     */
+    private final NameSurferGraphResources resources = new NameSurferGraphResources(this);
+
+    /**
+     * Draws all series into one image once there are too many entries.
+     * Only used by the renderer.
+     */
+    private final NameSurferSeriesLayer seriesLayer = new NameSurferSeriesLayer();
+
+    /**
+     * The layout of the latest update, which the renderer places and draws
+     * everything with.  Only used by the renderer.
+     */
+    private NameSurferLayout renderLayout = new NameSurferLayout(0, 0);
+
+    /**
+     * Whether the entries are drawn through the series layer instead of
+     * having objects of their own.
+     */
+    private boolean seriesMode;
+
+    /**
+     * Shows the series layer on the canvas, or null until the renderer has
+     * drawn it for the first time.
+     */
+    private GImage seriesImage;
+
+    /**
+     * Counts removals of the entry graphics, so that placements and images
+     * the renderer finishes afterwards are dropped.
+     */
+    private long generation;
+
+    /**
+     * The number of entries above which the series layer is used.
+     */
+    private int levelOfDetailThreshold = LOD_ENTRY_THRESHOLD;
+
+    /**
+     * The layout the objects on the canvas are currently placed with.
+     */
+    private NameSurferLayout layout = new NameSurferLayout(0, 0);
+
     /**
      * Creates a new NameSurferGraph object that displays the data.
      */
     public NameSurferGraph() {
         addComponentListener(this);
-      //  update();
+        layoutTimer.setRepeats(false);
+        createGrid();
     }
 
 
     /**
-     * Clears the list of name surfer entries stored inside this class.
+     * Clears the list of name surfer entries stored inside this class
+     * and removes their graphical objects from the canvas.
      */
     public void clear() {
+        removeEntryGraphics();
         entryList.clear();
         addedNames.clear();
     }
 
 
+    /**
+     * Sets the number of entries above which all series are drawn into
+     * one image, with overlapping labels and sub-pixel points left out.
+     */
+    public void setLevelOfDetailThreshold(int entries) {
+        levelOfDetailThreshold = entries;
+        removeEntryGraphics();
+        if (entryList.size() > levelOfDetailThreshold) {
+            showSeriesLayer();
+        } else {
+            addPlots(entryList);
+        }
+    }
+
+
     /* Method: addEntry(entry) */
 
     /**
      * Adds a new NameSurferEntry to the list of entries on the display.
-     * Note that this method does not actually draw the graph, but
-     * simply stores the entry; the graph is drawn by calling update.
+     * Only the graphical objects of the new entry are created; they show
+     * up once the renderer has placed them with the current layout.
      */
     public void addEntry(NameSurferEntry entry) {
         String name = entry.getName();
         if (!addedNames.contains(name)) {
             entryList.add(entry);
             addedNames.add(name);
+            if (seriesMode) {
+                drawSeries(entry, entryList.size() - 1);
+            } else if (entryList.size() > levelOfDetailThreshold) {
+                removeEntryGraphics();
+                showSeriesLayer();
+            } else {
+                addPlots(List.of(entry));
+            }
         }
     }
 
-
     /**
-     * Updates the display image by deleting all the graphical objects
-     * from the canvas and then reassembling the display according to
-     * the list of entries. Your application must call update after
-     * calling either clear or addEntry; update is also called whenever
-     * the size of the canvas changes.
+     * Creates the graphical objects of the entries and adds them to the
+     * canvas once the renderer has placed them.
      */
-    public void update() {
-        removeAll();
-        drawHorizontalLine(GRAPH_MARGIN_SIZE);
-        drawHorizontalLine(getHeight() - GRAPH_MARGIN_SIZE);
-        drawGraphAndVerticalLines();
+    private void addPlots(List<NameSurferEntry> entries) {
+        List<EntryPlot> added = new ArrayList<>();
+        for (NameSurferEntry entry : entries) {
+            added.add(new EntryPlot(entry, plots.size()));
+            plots.add(added.get(added.size() - 1));
+        }
+        long requested = generation;
+        renderer.execute(() -> {
+            List<EntryPlot.Placement> placements = placements(added);
+            SwingUtilities.invokeLater(() -> {
+                if (requested == generation) {
+                    for (int i = 0; i < added.size(); i++) {
+                        added.get(i).moveTo(placements.get(i));
+                        added.get(i).addTo(this);
+                    }
+                }
+            });
+        });
     }
 
     /**
-     * Draws the graph and vertical decade lines based on the provided list of NameSurferEntry objects.
+     * Removes the objects of all entries and the series layer from the canvas.
      */
-    private void drawGraphAndVerticalLines() {
-        // Calculate the horizontal step between decades.
-        int stepX = getWidth() / NDECADES;
-
-        // Calculate the vertical scaling factor to fit rankings within the graph's height.
-        double scaleY = (double) (getHeight() - 2 * GRAPH_MARGIN_SIZE) / MAX_RANK;
-
-        // Iterate through each decade to draw vertical lines and labels.
-        for (int i = 0; i < NDECADES; i++) {
-            // Calculate the start year of the current decade.
-            int startDecade = START_DECADE + DECADE_STEP * i;
+    private void removeEntryGraphics() {
+        for (EntryPlot plot : plots) {
+            plot.removeFrom(this);
+        }
+        plots.clear();
+        if (seriesImage != null) {
+            remove(seriesImage);
+            seriesImage = null;
+        }
+        seriesMode = false;
+        generation++;
+    }
 
-            // Create a label with text representing the current decade.
-            String decadeText = "  " + startDecade;
-            GLabel label = new GLabel(decadeText);
-            label.setFont("Arial-18");
+    /**
+     * Has the renderer draw all entries into the series layer, which is
+     * put on the canvas when it is done.
+     */
+    private void showSeriesLayer() {
+        seriesMode = true;
+        List<NameSurferEntry> entries = List.copyOf(entryList);
+        long requested = generation;
+        renderer.execute(() -> {
+            BufferedImage image = drawSeriesLayer(entries);
+            SwingUtilities.invokeLater(() -> showSeriesImage(image, requested));
+        });
+    }
 
-            // Create a vertical line for the current decade.
-            GLine line = new GLine(stepX * i, 0, stepX * i, getHeight());
+    /**
+     * Has the renderer draw one more entry on top of the series layer.
+     */
+    private void drawSeries(NameSurferEntry entry, int entryIndex) {
+        long requested = generation;
+        renderer.execute(() -> {
+            seriesLayer.draw(entry, entryIndex);
+            BufferedImage image = seriesLayer.publish();
+            SwingUtilities.invokeLater(() -> showSeriesImage(image, requested));
+        });
+    }
 
-            add(line);
-            add(label, stepX * i, getHeight() - label.getDescent());
+    /**
+     * Puts a finished image of the series layer on the canvas, unless the
+     * entry graphics were removed after it was requested.
+     */
+    private void showSeriesImage(BufferedImage image, long requested) {
+        if (requested != generation) {
+            return;
         }
+        if (seriesImage == null) {
+            seriesImage = new GImage(image);
+            add(seriesImage, 0, 0);
+        } else {
+            seriesImage.setImage(image);
+        }
+    }
 
-        // Iterate through the list of NameSurferEntry objects.
-        for (int i = 0; i < entryList.size(); i++) {
-            // Get the current NameSurferEntry from the list.
-            NameSurferEntry current = entryList.get(i);
-
-            // Iterate through the decades.
-            for (int j = 0; j < NDECADES; j++) {
-                // Get the ranking for the current decade and adjust it if it's zero.
-                int rank = (isZero(current.getRank(j)));
 
-                // Skip drawing a line for the first decade (j=0).
-                if (j != 0) {
-                    drawLine(stepX, j, rank, i, current, scaleY);
+    /**
+     * Moves and rescales all graphical objects to fit the current size
+     * of the canvas.  No objects are created or removed; update is
+     * called whenever the size of the canvas changes.  The renderer
+     * computes the new places or redraws the series layer, and the grid
+     * moves together with the entries.
+     */
+    public void update() {
+        layoutTimer.stop();
+        NameSurferLayout next = new NameSurferLayout(getWidth(), getHeight());
+        List<EntryPlot> placed = List.copyOf(plots);
+        List<NameSurferEntry> entries = seriesMode ? List.copyOf(entryList) : null;
+        long requested = generation;
+        renderer.execute(() -> {
+            renderLayout = next;
+            if (entries != null) {
+                BufferedImage image = drawSeriesLayer(entries);
+                SwingUtilities.invokeLater(() -> {
+                    showLayout(next);
+                    showSeriesImage(image, requested);
+                });
+                return;
+            }
+            List<EntryPlot.Placement> placements = placements(placed);
+            SwingUtilities.invokeLater(() -> {
+                showLayout(next);
+                if (requested == generation) {
+                    for (int i = 0; i < placed.size(); i++) {
+                        placed.get(i).moveTo(placements.get(i));
+                    }
                 }
+            });
+        });
+    }
 
-                // Draw labels and data points for each decade.
-                drawLabelsAndPoint(stepX, j, rank, scaleY, i, current.getName());
-            }
+    /**
+     * Draws the entries into a new series layer with the render layout.
+     * Runs on the renderer.
+     */
+    private BufferedImage drawSeriesLayer(List<NameSurferEntry> entries) {
+        seriesLayer.reset(renderLayout, labelFont());
+        for (int i = 0; i < entries.size(); i++) {
+            seriesLayer.draw(entries.get(i), i);
         }
+        return seriesLayer.publish();
     }
 
-
     /**
-     * Draws a line segment on the graph representing a specific decade's rank for a name.
-     *
-     * @param stepX      The horizontal step between decades.
-     * @param j          The index of the current decade.
-     * @param rank       The rank for the current decade.
-     * @param entryIndex The index of the NameSurferEntry in the entryList.
-     * @param current    The current NameSurferEntry being processed.
-     * @param scaleY     The vertical scaling factor for ranking values.
-     */
-    private void drawLine(int stepX, int j, int rank, int entryIndex, NameSurferEntry current, double scaleY) {
-        // Calculate the rank for the previous decade and adjust it if it's zero.
-        int previousRank = (isZero(current.getRank(j - 1)));
-
-        // Create a GLine representing the line segment between two consecutive decades.
-        GLine line = new GLine(stepX * (j - 1), GRAPH_MARGIN_SIZE + previousRank * scaleY,
-                stepX * j, GRAPH_MARGIN_SIZE + rank * scaleY);
-
-        // Choose and set the color for the line based on the entry's index.
-        chooseColor(line, entryIndex);
-        add(line);
+     * Computes where the objects of the plots go in the render layout.
+     * Runs on the renderer.
+     */
+    private List<EntryPlot.Placement> placements(List<EntryPlot> toPlace) {
+        Font font = labelFont();
+        List<EntryPlot.Placement> placements = new ArrayList<>(toPlace.size());
+        for (EntryPlot plot : toPlace) {
+            placements.add(plot.placement(renderLayout, font, resources));
+        }
+        return placements;
     }
 
-
     /**
-     * Draws labels and a data point for a specific decade's rank and name.
-     *
-     * @param stepX      The horizontal step between decades.
-     * @param j          The index of the current decade.
-     * @param rank       The rank for the current decade.
-     * @param scaleY     The vertical scaling factor for ranking values.
-     * @param entryIndex The index of the NameSurferEntry in the entryList.
-     * @param name       The name being displayed.
+     * Makes the given layout the current one and moves the grid to it.
      */
-    private void drawLabelsAndPoint(int stepX, int j, int rank, double scaleY, int entryIndex, String name) {
-        // Create a label for displaying the rank (with "*" if it's MAX_RANK).
-        GLabel rankText = addLabel((rank == MAX_RANK ? "*" : " " + rank), entryIndex);
-
-        // Create a label for displaying the name.
-        GLabel nameText = addLabel(name, entryIndex);
-
-        // Calculate the width of the name label.
-        double nameTextWidth = nameText.getWidth();
-
-        // Add the rank label and position it appropriately.
-        add(rankText, stepX * j + nameTextWidth, GRAPH_MARGIN_SIZE + rank * scaleY);
-
-        // Add the name label and position it appropriately.
-        add(nameText, stepX * j, GRAPH_MARGIN_SIZE + rank * scaleY);
-
-        // Draw an oval data point for the rank and name.
-        drawOval(stepX, j, rank, scaleY, entryIndex);
+    private void showLayout(NameSurferLayout next) {
+        layout = next;
+        placeGrid();
     }
 
+    /**
+     * Creates the horizontal margin lines, the vertical decade lines and
+     * the decade labels and adds them to the canvas.
+     */
+    private void createGrid() {
+        add(topLine);
+        add(bottomLine);
+        for (int i = 0; i < NDECADES; i++) {
+            decadeLines[i] = new GLine(0, 0, 0, 0);
+            decadeLabels[i] = new GLabel(NameSurferLayout.decadeText(i));
+            decadeLabels[i].setFont("Arial-18");
+            add(decadeLines[i]);
+            add(decadeLabels[i]);
+        }
+    }
 
     /**
-     * Draws an oval data point on the graph representing a specific decade's rank and name.
-     *
-     * @param stepX      The horizontal step between decades.
-     * @param j          The index of the current decade.
-     * @param rank       The rank for the current decade.
-     * @param scaleY     The vertical scaling factor for ranking values.
-     * @param entryIndex The index of the NameSurferEntry in the entryList.
-     */
-    private void drawOval(int stepX, int j, int rank, double scaleY, int entryIndex) {
-        // Create an oval representing a data point.
-        GOval point = new GOval(stepX * j - POINT_DIAMETER / 2,
-                (GRAPH_MARGIN_SIZE + rank * scaleY) - POINT_DIAMETER / 2,
-                POINT_DIAMETER, POINT_DIAMETER);
-
-        // Fill the oval to make it visible.
-        point.setFilled(true);
-
-        // Choose and set the color for the oval based on the entry's index.
-        chooseColor(point, entryIndex);
-        add(point);
+     * Places the grid objects according to the current layout.
+     */
+    private void placeGrid() {
+        placeHorizontalLine(topLine, GRAPH_MARGIN_SIZE);
+        placeHorizontalLine(bottomLine, layout.height() - GRAPH_MARGIN_SIZE);
+        for (int i = 0; i < NDECADES; i++) {
+            double x = layout.decadeX(i);
+            decadeLines[i].setStartPoint(x, 0);
+            decadeLines[i].setEndPoint(x, layout.height());
+            decadeLabels[i].setLocation(x, layout.height() - decadeLabels[i].getDescent());
+        }
     }
 
     /**
-     * Creates and configures a GLabel for displaying text on the canvas.
+     * Places a horizontal line through all canvas.
      *
-     * @param text The text to be displayed on the label.
-     * @param i    The index used to choose the label's color.
-     * @return A GLabel with the specified text and styling.
+     * @param line   the line to place
+     * @param height set margin
      */
-    private GLabel addLabel(String text, int i) {
-        // Calculate a font scaling factor based on canvas size.
-        double fontScale = ((double) getWidth() * getHeight()) / (APPLICATION_HEIGHT * APPLICATION_WIDTH);
-
-        // Create a GLabel with the specified text.
-        GLabel label = new GLabel(text);
-
-        // Set the font for the label with scaling.
-        label.setFont(new Font("Arial", Font.BOLD, (int) (13 * fontScale)));
-
-        // Choose and set the color for the label based on the entry's index.
-        chooseColor(label, i);
-
-        // Bring the label to the front so it's visible.
-        label.sendToFront();
-
-        return label;
+    private void placeHorizontalLine(GLine line, double height) {
+        line.setStartPoint(0, height);
+        line.setEndPoint(layout.width(), height);
     }
 
-
     /**
-     * Checks if the rank is zero and replaces it with the maximum rank value if so.
-     *
-     * @param rank The rank value to be checked and possibly replaced.
-     * @return The original rank value if not zero, or the maximum rank value if zero.
+     * Returns the font of the entry labels for the render layout.  Runs
+     * on the renderer.
      */
-    private int isZero(int rank) {
-        // Check if the rank is zero and replace it with the maximum rank value if true.
-        return rank == 0 ? MAX_RANK : rank;
+    private Font labelFont() {
+        return resources.labelFont(renderLayout.labelFontSize());
     }
 
 
     /**
-     * Sets the color of a GObject based on the provided index and a predefined array of colors.
+     * Sets the color of a GObject based on the provided index and the palette.
      *
      * @param obj The GObject whose color is to be set.
-     * @param i   The index used to select a color from the predefined array.
+     * @param i   The index used to select a color from the palette.
      */
-    private void chooseColor(GObject obj, int i) {
-        // Define an array of colors.
-        Color[] colors = {Color.BLUE, Color.RED, Color.MAGENTA, Color.BLACK};
-
-        // Set the color of the GObject using the specified index and the color array.
-        obj.setColor(colors[i % colors.length]);
+    private static void chooseColor(GObject obj, int i) {
+        obj.setColor(NameSurferGraphResources.color(i));
     }
 
 
     /**
-     * Draws horizontal line through all canvas
-     *
-     * @param height set margin
+     * The graphical objects of one plotted entry: a line segment between
+     * every two neighbouring decades, and a name label, a rank label and
+     * a data point for every decade.
      */
-    public void drawHorizontalLine(double height) {
-        GLine line = new GLine(0, height, getWidth(), height);
-        add(line);
+    private static final class EntryPlot{
+        private final NameSurferEntry entry;
+        private final GLine[] lines = new GLine[NDECADES - 1];
+        private final GLabel[] rankLabels = new GLabel[NDECADES];
+        private final GLabel[] nameLabels = new GLabel[NDECADES];
+        private final GOval[] points = new GOval[NDECADES];
+        private Font font;
+        private boolean added;
+
+        /**
+         * Creates the objects of the entry, colored by its index in the
+         * entry list.
+         */
+        EntryPlot(NameSurferEntry entry, int entryIndex) {
+            this.entry = entry;
+            for (int j = 0; j < NDECADES; j++) {
+                if (j != 0) {
+                    lines[j - 1] = new GLine(0, 0, 0, 0);
+                    chooseColor(lines[j - 1], entryIndex);
+                }
+                rankLabels[j] = new GLabel(NameSurferLayout.rankText(entry.getRank(j)));
+                nameLabels[j] = new GLabel(entry.getName());
+                chooseColor(rankLabels[j], entryIndex);
+                chooseColor(nameLabels[j], entryIndex);
+
+                points[j] = new GOval(0, 0, POINT_DIAMETER, POINT_DIAMETER);
+                points[j].setFilled(true);
+                chooseColor(points[j], entryIndex);
+            }
+        }
+
+        /**
+         * Adds all objects of the entry to the canvas, in the order the
+         * graph has always drawn them.
+         */
+        void addTo(GCanvas canvas) {
+            added = true;
+            for (int j = 0; j < NDECADES; j++) {
+                if (j != 0) {
+                    canvas.add(lines[j - 1]);
+                }
+                canvas.add(rankLabels[j]);
+                canvas.add(nameLabels[j]);
+                canvas.add(points[j]);
+            }
+        }
+
+        void removeFrom(GCanvas canvas) {
+            if (!added) {
+                return;
+            }
+            added = false;
+            for (int j = 0; j < NDECADES; j++) {
+                if (j != 0) {
+                    canvas.remove(lines[j - 1]);
+                }
+                canvas.remove(rankLabels[j]);
+                canvas.remove(nameLabels[j]);
+                canvas.remove(points[j]);
+            }
+        }
+
+        /**
+         * Computes the places of the objects of the entry in the given
+         * layout without touching the objects, so it can run on the
+         * renderer.  The name width comes from the resource cache.
+         */
+        Placement placement(NameSurferLayout layout, Font labelFont, NameSurferGraphResources resources) {
+            double[] xs = new double[NDECADES];
+            double[] ys = new double[NDECADES];
+            for (int j = 0; j < NDECADES; j++) {
+                xs[j] = layout.decadeX(j);
+                ys[j] = layout.rankY(entry.getRank(j));
+            }
+            return new Placement(labelFont, resources.textWidth(entry.getName(), labelFont), xs, ys);
+        }
+
+        /**
+         * Moves the objects of the entry to the computed places.  The
+         * labels only get the font when it differs from the one they
+         * already have.
+         */
+        void moveTo(Placement placement) {
+            boolean newFont = placement.font != font;
+            font = placement.font;
+            double[] xs = placement.xs;
+            double[] ys = placement.ys;
+            for (int j = 0; j < NDECADES; j++) {
+                // Connect the point with the one of the previous decade.
+                if (j != 0) {
+                    lines[j - 1].setStartPoint(xs[j - 1], ys[j - 1]);
+                    lines[j - 1].setEndPoint(xs[j], ys[j]);
+                }
+
+                // The rank label goes right after the name label.
+                if (newFont) {
+                    nameLabels[j].setFont(font);
+                    rankLabels[j].setFont(font);
+                }
+                nameLabels[j].setLocation(xs[j], ys[j]);
+                rankLabels[j].setLocation(xs[j] + placement.nameWidth, ys[j]);
+
+                points[j].setLocation(xs[j] - POINT_DIAMETER / 2, ys[j] - POINT_DIAMETER / 2);
+            }
+        }
+
+        /**
+         * The places of the objects of one entry in a layout: the label
+         * font, the width of the name in it, and the point of every decade.
+         */
+        static final class Placement{
+            private final Font font;
+            private final double nameWidth;
+            private final double[] xs;
+            private final double[] ys;
+
+            Placement(Font font, double nameWidth, double[] xs, double[] ys) {
+                this.font = font;
+                this.nameWidth = nameWidth;
+                this.xs = xs;
+                this.ys = ys;
+            }
+        }
     }
 
 
@@ -276,9 +534,11 @@ public class NameSurferGraph extends GCanvas
     }
 
     public void componentResized(ComponentEvent e) {
-        update();
+        if (!layoutTimer.isRunning()) {
+            layoutTimer.start();
+        }
     }
 
     public void componentShown(ComponentEvent e) {
     }
-}
\ No newline at end of file
+}
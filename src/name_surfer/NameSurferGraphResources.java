@@ -0,0 +1,75 @@
+package name_surfer;
+
+/*
+ * File: NameSurferGraphResources.java
+ * -----------------------------------
+ * This class caches what the graph needs again and again while it
+ * places its labels: the label fonts keyed by their scaled size, the
+ * palette of entry colors, and the width of every label text in a
+ * given font.  Text widths only change with the font, so the cache is
+ * cleared only when the canvas scale gives the labels a new size.
+ */
+
+import java.awt.*;
+import java.util.HashMap;
+
+final class NameSurferGraphResources{
+
+    /**
+     * The colors of the plotted entries, used in turn.
+     */
+    private static final Color[] PALETTE = {Color.BLUE, Color.RED, Color.MAGENTA, Color.BLACK};
+
+    /* The component whose font metrics measure the texts. */
+    private final Component component;
+
+    /* Label fonts keyed by their point size. */
+    private final HashMap<Integer, Font> fonts = new HashMap<>();
+
+    /* Text widths keyed by font, then by text. */
+    private final HashMap<Font, HashMap<String, Double>> textWidths = new HashMap<>();
+
+    /* The label font size the text width cache was filled for. */
+    private int scaledSize = -1;
+
+    /**
+     * Creates the resources for labels drawn on the given component.
+     */
+    NameSurferGraphResources(Component component) {
+        this.component = component;
+    }
+
+    /**
+     * Returns the color of the entry with the given index.
+     */
+    static Color color(int entryIndex) {
+        return PALETTE[entryIndex % PALETTE.length];
+    }
+
+    /**
+     * Returns the bold Arial label font of the given size.  When the
+     * size differs from the previous call, the canvas scale has changed
+     * and all cached text widths are dropped.
+     */
+    Font labelFont(int size) {
+        if (size != scaledSize) {
+            textWidths.clear();
+            scaledSize = size;
+        }
+        return fonts.computeIfAbsent(size, s -> new Font("Arial", Font.BOLD, s));
+    }
+
+    /**
+     * Returns the width of the text in the given font, measuring it
+     * only the first time.
+     */
+    double textWidth(String text, Font font) {
+        HashMap<String, Double> widths = textWidths.computeIfAbsent(font, f -> new HashMap<>());
+        Double width = widths.get(text);
+        if (width == null) {
+            width = (double) component.getFontMetrics(font).stringWidth(text);
+            widths.put(text, width);
+        }
+        return width;
+    }
+}
@@ -0,0 +1,104 @@
+package name_surfer;
+
+/*
+ * File: NameSurferLayout.java
+ * ---------------------------
+ * This class holds the layout maths of the NameSurfer graph for one
+ * canvas size: where the decade lines go, how ranks map to heights
+ * and how large the labels are.  Keeping it in one place lets every
+ * renderer place things exactly the same way.
+ */
+
+final class NameSurferLayout implements NameSurferConstants{
+
+    /* The width of the canvas in pixels. */
+    private final int width;
+
+    /* The height of the canvas in pixels. */
+    private final int height;
+
+    /* The horizontal step between decades. */
+    private final int stepX;
+
+    /* The vertical scaling factor that fits the rankings within the graph's height. */
+    private final double scaleY;
+
+    /**
+     * Creates the layout for a canvas of the given size.
+     */
+    NameSurferLayout(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.stepX = width / NDECADES;
+        this.scaleY = (double) (height - 2 * GRAPH_MARGIN_SIZE) / MAX_RANK;
+    }
+
+    int width() {
+        return width;
+    }
+
+    int height() {
+        return height;
+    }
+
+    /**
+     * Returns the x coordinate of the vertical line of the given decade.
+     */
+    double decadeX(int decade) {
+        return stepX * decade;
+    }
+
+    /**
+     * Returns the y coordinate of the given rank; a missing rank is
+     * drawn at the bottom, like MAX_RANK.
+     */
+    double rankY(int rank) {
+        return GRAPH_MARGIN_SIZE + plotRank(rank) * scaleY;
+    }
+
+    /**
+     * Returns the label text of the decade with the given index.
+     */
+    static String decadeText(int decade) {
+        return "  " + (START_DECADE + DECADE_STEP * decade);
+    }
+
+    /**
+     * Returns the label text of a rank: "*" for names that are not
+     * ranked (or ranked last), the rank itself otherwise.
+     */
+    static String rankText(int rank) {
+        int plotted = plotRank(rank);
+        return plotted == MAX_RANK ? "*" : " " + plotted;
+    }
+
+    /**
+     * Replaces a missing rank (zero) with the maximum rank value.
+     */
+    static int plotRank(int rank) {
+        return rank == 0 ? MAX_RANK : rank;
+    }
+
+    /**
+     * Returns the scale of the canvas area relative to the default
+     * application size.
+     */
+    double scale() {
+        return ((double) width * height) / (APPLICATION_HEIGHT * APPLICATION_WIDTH);
+    }
+
+    /**
+     * Returns the size of the entry labels, scaled with the canvas area.
+     */
+    int labelFontSize() {
+        return (int) (13 * scale());
+    }
+
+    /**
+     * Returns the diameter of a data point when the points are scaled
+     * with the canvas like the labels are.
+     */
+    double scaledPointDiameter() {
+        return POINT_DIAMETER * Math.min(1.0, scale());
+    }
+}
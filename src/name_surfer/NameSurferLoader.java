@@ -0,0 +1,248 @@
+package name_surfer;
+
+/*
+ * File: NameSurferLoader.java
+ * ---------------------------
+ * This class reads the names data file into NameSurferColumns.
+ * The file is memory-mapped and cut into newline-aligned chunks,
+ * every chunk is parsed straight from its bytes on the fork-join
+ * pool, and the parsed chunks are merged back in file order.
+ *
+ * Usage: java name_surfer.NameSurferLoader dataFile [decades]
+ *
+ * Loads the file once and prints how fast it was read.
+ */
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.DoubleConsumer;
+
+final class NameSurferLoader{
+
+    /* The preferred number of bytes parsed by one task. */
+    private static final int CHUNK_SIZE = 4 << 20;
+
+    /* How many bytes are read at a time while looking for the end of a line. */
+    private static final int SCAN_SIZE = 256;
+
+    private NameSurferLoader() {
+    }
+
+    /* Method: load(filename, decades) */
+
+    /**
+     * Loads the given file, where every line holds a name followed by
+     * the given number of ranks separated by spaces.
+     */
+    static NameSurferColumns load(String filename, int decades) throws IOException {
+        return load(filename, decades, progress -> {
+        });
+    }
+
+    /* Method: load(filename, decades, progress) */
+
+    /**
+     * Loads the given file like load(filename, decades) and reports the
+     * parsed fraction of the file, from 0 to 1, to the progress consumer
+     * after every chunk.  The consumer is called from the worker threads.
+     */
+    static NameSurferColumns load(String filename, int decades, DoubleConsumer progress) throws IOException {
+        Path path = Paths.get(filename);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            List<long[]> chunks = splitIntoChunks(channel, size);
+            Progress parsed = new Progress(size, progress);
+
+            NameSurferColumns.Builder builder;
+            try {
+                builder = ForkJoinPool.commonPool()
+                        .invoke(new ParseTask(channel, chunks, 0, chunks.size(), decades, parsed));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            NameSurferColumns columns = builder.build();
+            progress.accept(1.0);
+            return columns;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: NameSurferLoader dataFile [decades]");
+            System.exit(2);
+        }
+        int decades = args.length > 1 ? Integer.parseInt(args[1]) : NameSurferConstants.NDECADES;
+        long start = System.nanoTime();
+        NameSurferColumns columns = load(args[0], decades);
+        long nanos = Math.max(1, System.nanoTime() - start);
+        double megabytes = Files.size(Paths.get(args[0])) / (1024.0 * 1024.0);
+        System.out.printf("Loaded %d names from %s: %.1f MB in %d ms (%.1f MB/s)%n",
+                columns.size(), args[0], megabytes, nanos / 1_000_000, megabytes * 1e9 / nanos);
+    }
+
+    /**
+     * Splits the file into [start, end) ranges of roughly CHUNK_SIZE bytes,
+     * each of which ends right after a newline or at the end of the file.
+     */
+    private static List<long[]> splitIntoChunks(FileChannel channel, long size) throws IOException {
+        List<long[]> chunks = new ArrayList<>();
+        ByteBuffer scan = ByteBuffer.allocate(SCAN_SIZE);
+        long start = 0;
+        while (start < size) {
+            long end = Math.min(size, start + CHUNK_SIZE);
+            while (end < size) {
+                scan.clear();
+                int read = channel.read(scan, end);
+                int newline = -1;
+                for (int i = 0; i < read && newline < 0; i++) {
+                    if (scan.get(i) == '\n') {
+                        newline = i;
+                    }
+                }
+                if (newline >= 0) {
+                    end += newline + 1;
+                    break;
+                }
+                end += read;
+            }
+            chunks.add(new long[]{start, Math.min(end, size)});
+            start = end;
+        }
+        return chunks;
+    }
+
+    /**
+     * Parses every line of the chunk bytes into the builder.  Empty lines
+     * are skipped, and both "\n" and "\r\n" line endings are accepted.
+     */
+    private static void parseChunk(byte[] buffer, long chunkStart,
+                                   NameSurferColumns.Builder builder, int decades) {
+        int[] rankRow = new int[decades];
+        int limit = buffer.length;
+        int pos = 0;
+        while (pos < limit) {
+            // Read the name up to the first space.
+            int nameStart = pos;
+            byte b;
+            while (pos < limit && (b = buffer[pos]) != ' ' && b != '\n' && b != '\r') {
+                pos++;
+            }
+            int nameLength = pos - nameStart;
+            if (nameLength == 0) {
+                pos++;
+                continue;
+            }
+
+            // Read one rank for every decade.
+            for (int decade = 0; decade < decades; decade++) {
+                while (pos < limit && buffer[pos] == ' ') {
+                    pos++;
+                }
+                int rank = 0;
+                int digits = 0;
+                while (pos < limit && (b = buffer[pos]) >= '0' && b <= '9') {
+                    rank = rank * 10 + (b - '0');
+                    digits++;
+                    pos++;
+                }
+                if (digits == 0) {
+                    throw new NumberFormatException("Missing rank for \""
+                            + new String(buffer, nameStart, nameLength) + "\" at byte " + (chunkStart + pos));
+                }
+                rankRow[decade] = rank;
+            }
+            builder.add(buffer, nameStart, nameLength, rankRow, 0);
+
+            // Skip whatever is left of the line.
+            while (pos < limit && buffer[pos++] != '\n') {
+            }
+        }
+    }
+
+    /**
+     * Parses the chunks [from, to) of the list.  A single chunk is
+     * mapped, copied out of the mapping in one bulk read and parsed
+     * directly.  A longer run of chunks is split in two halves, whose
+     * results are merged in file order.
+     */
+    private static final class ParseTask extends RecursiveTask<NameSurferColumns.Builder>{
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final List<long[]> chunks;
+        private final int from;
+        private final int to;
+        private final int decades;
+        private final Progress parsed;
+
+        ParseTask(FileChannel channel, List<long[]> chunks, int from, int to, int decades, Progress parsed) {
+            this.channel = channel;
+            this.chunks = chunks;
+            this.from = from;
+            this.to = to;
+            this.decades = decades;
+            this.parsed = parsed;
+        }
+
+        @Override
+        protected NameSurferColumns.Builder compute() {
+            if (to - from <= 1) {
+                NameSurferColumns.Builder builder = new NameSurferColumns.Builder(decades);
+                if (from < to) {
+                    long[] chunk = chunks.get(from);
+                    try {
+                        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+                                chunk[0], chunk[1] - chunk[0]);
+                        byte[] bytes = new byte[buffer.remaining()];
+                        buffer.get(bytes);
+                        parseChunk(bytes, chunk[0], builder, decades);
+                        parsed.add(bytes.length);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                return builder;
+            }
+            int middle = (from + to) >>> 1;
+            ParseTask left = new ParseTask(channel, chunks, from, middle, decades, parsed);
+            ParseTask right = new ParseTask(channel, chunks, middle, to, decades, parsed);
+            right.fork();
+            NameSurferColumns.Builder result = left.compute();
+            result.addAll(right.join());
+            return result;
+        }
+    }
+
+    /**
+     * Counts the parsed bytes of all chunks and reports them as a fraction
+     * of the file size.  Building the columns after parsing is counted as
+     * the last step, so parsing alone reports at most PARSED_SHARE.
+     */
+    private static final class Progress{
+        private static final double PARSED_SHARE = 0.9;
+        private final AtomicLong bytes = new AtomicLong();
+        private final long size;
+        private final DoubleConsumer consumer;
+
+        Progress(long size, DoubleConsumer consumer) {
+            this.size = Math.max(1, size);
+            this.consumer = consumer;
+        }
+
+        void add(long parsedBytes) {
+            consumer.accept(PARSED_SHARE * bytes.addAndGet(parsedBytes) / size);
+        }
+    }
+}
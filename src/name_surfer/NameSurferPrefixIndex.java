@@ -0,0 +1,154 @@
+package name_surfer;
+
+/*
+ * File: NameSurferPrefixIndex.java
+ * --------------------------------
+ * This class answers "which names start with these letters" for
+ * the autocomplete of the NameSurfer text field.  The names in
+ * NameSurferColumns are already sorted independent of case, so all
+ * names with a common prefix form one range of ids that is found
+ * with two binary searches.  A segment tree over the best rank of
+ * every name then yields the k most popular names of that range
+ * without scanning it.
+ */
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+final class NameSurferPrefixIndex{
+
+    private final NameSurferColumns columns;
+
+    /* The best (smallest non-zero) rank of every name over all decades. */
+    private final int[] bestRanks;
+
+    /* Bottom-up segment tree: node i > 0 holds the id with the best rank below it, leaves start at size. */
+    private final int[] tree;
+
+    /* The number of leaves of the tree, which is the number of names. */
+    private final int size;
+
+    /**
+     * Builds the index over the given columns in time linear in the
+     * number of names.
+     */
+    NameSurferPrefixIndex(NameSurferColumns columns) {
+        this.columns = columns;
+        this.size = columns.size();
+        this.bestRanks = new int[size];
+        for (int id = 0; id < size; id++) {
+            bestRanks[id] = columns.bestRank(id);
+        }
+        this.tree = new int[2 * Math.max(1, size)];
+        for (int id = 0; id < size; id++) {
+            tree[size + id] = id;
+        }
+        for (int node = size - 1; node > 0; node--) {
+            tree[node] = better(tree[2 * node], tree[2 * node + 1]);
+        }
+    }
+
+    /**
+     * Returns the number of bytes the index takes, without the columns.
+     */
+    long sizeInBytes() {
+        return 4L * (bestRanks.length + tree.length);
+    }
+
+    /* Method: complete(prefix, limit) */
+
+    /**
+     * Returns up to limit names that start with the given prefix,
+     * ignoring case, ordered by their best rank.  Names of equal rank
+     * keep their alphabetical order.
+     */
+    List<NameSurferEntry> complete(String prefix, int limit) {
+        List<NameSurferEntry> result = new ArrayList<>();
+        if (limit <= 0 || size == 0) {
+            return result;
+        }
+        byte[] key = prefix.getBytes(StandardCharsets.UTF_8);
+        int from = lowerBound(key);
+        int to = upperBound(key, from);
+
+        // Every queued range is stored as {best id, from, to}, smallest best rank first.
+        PriorityQueue<int[]> ranges = new PriorityQueue<>((a, b) -> compareIds(a[0], b[0]));
+        if (from < to) {
+            ranges.add(new int[]{bestIn(from, to), from, to});
+        }
+        while (!ranges.isEmpty() && result.size() < limit) {
+            int[] range = ranges.poll();
+            int id = range[0];
+            result.add(new NameSurferEntry(columns, id));
+            if (range[1] < id) {
+                ranges.add(new int[]{bestIn(range[1], id), range[1], id});
+            }
+            if (id + 1 < range[2]) {
+                ranges.add(new int[]{bestIn(id + 1, range[2]), id + 1, range[2]});
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the first id whose name is not smaller than the key.
+     */
+    private int lowerBound(byte[] key) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (columns.compareToName(key, 0, key.length, middle) > 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the first id at or after from whose name does not start
+     * with the key.
+     */
+    private int upperBound(byte[] key, int from) {
+        int low = from;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (columns.nameStartsWith(middle, key)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the id with the best rank in [from, to).
+     */
+    private int bestIn(int from, int to) {
+        int best = from;
+        for (int low = from + size, high = to + size; low < high; low >>= 1, high >>= 1) {
+            if ((low & 1) == 1) {
+                best = better(best, tree[low++]);
+            }
+            if ((high & 1) == 1) {
+                best = better(best, tree[--high]);
+            }
+        }
+        return best;
+    }
+
+    private int better(int a, int b) {
+        return compareIds(a, b) <= 0 ? a : b;
+    }
+
+    private int compareIds(int a, int b) {
+        int byRank = Integer.compare(bestRanks[a], bestRanks[b]);
+        return byRank != 0 ? byRank : Integer.compare(a, b);
+    }
+}
@@ -0,0 +1,361 @@
+package name_surfer;
+
+/*
+ * File: NameSurferQuery.java
+ * --------------------------
+ * This class answers questions about the whole database at once,
+ * such as "the top 100 names in the 1950s" or "the names with the
+ * largest rank gain between two decades".  Every query is a single
+ * scan over the primitive rank matrix, split into ranges that are
+ * scanned in parallel on the fork-join pool.  Top-N queries keep
+ * only a bounded heap per range.  The results are lightweight
+ * NameSurferEntry views of the database.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+
+public class NameSurferQuery implements NameSurferConstants{
+
+    /* The number of names one task scans before the range is not split any more. */
+    private static final int SCAN_RANGE = 1 << 15;
+
+    private final NameSurferColumns columns;
+
+    /* Ids of the ranked names of every decade sorted by rank, or null until built. */
+    private final int[][] decadeIndexes;
+
+    /**
+     * Creates a query engine over the given database.
+     */
+    public NameSurferQuery(NameSurferDataBase dataBase) {
+        this.columns = dataBase.columns();
+        this.decadeIndexes = new int[columns.decades()][];
+    }
+
+    /* Method: topNames(decade, n) */
+
+    /**
+     * Returns the n best ranked names of the given decade, best first.
+     * The decade is counted from START_DECADE, like in getRank.  Names
+     * that are not ranked in that decade are never returned.  A
+     * negative n is an IllegalArgumentException.
+     */
+    public List<NameSurferEntry> topNames(int decade, int n) {
+        checkDecade(decade);
+        checkCount(n);
+        int[] index = decadeIndex(decade);
+        if (index != null) {
+            return entries(Arrays.copyOf(index, Math.min(n, index.length)));
+        }
+        TopN top = scan((from, to) -> {
+            TopN part = new TopN(n, to - from);
+            for (int id = from; id < to; id++) {
+                int rank = columns.rank(id, decade);
+                if (rank > 0) {
+                    part.offer(rank, id);
+                }
+            }
+            return part;
+        }, TopN::merge);
+        return entries(top.sortedIds());
+    }
+
+    /* Method: biggestGains(fromDecade, toDecade, n) */
+
+    /**
+     * Returns the n names whose rank improved most from one decade to
+     * another, biggest gain first.  A missing rank counts as MAX_RANK,
+     * just like on the graph.  A negative n is an IllegalArgumentException.
+     */
+    public List<NameSurferEntry> biggestGains(int fromDecade, int toDecade, int n) {
+        checkDecade(fromDecade);
+        checkDecade(toDecade);
+        checkCount(n);
+        TopN top = scan((from, to) -> {
+            TopN part = new TopN(n, to - from);
+            for (int id = from; id < to; id++) {
+                int gain = graphRank(columns.rank(id, fromDecade)) - graphRank(columns.rank(id, toDecade));
+                if (gain > 0) {
+                    part.offer(-gain, id);
+                }
+            }
+            return part;
+        }, TopN::merge);
+        return entries(top.sortedIds());
+    }
+
+    /* Method: rankedInEveryDecade() */
+
+    /**
+     * Returns all names that have a rank in every decade, in
+     * alphabetical order.
+     */
+    public List<NameSurferEntry> rankedInEveryDecade() {
+        IdList ids = scan((from, to) -> {
+            IdList part = new IdList();
+            for (int id = from; id < to; id++) {
+                boolean everyDecade = true;
+                for (int decade = 0; decade < columns.decades() && everyDecade; decade++) {
+                    everyDecade = columns.rank(id, decade) > 0;
+                }
+                if (everyDecade) {
+                    part.add(id);
+                }
+            }
+            return part;
+        }, IdList::addAll);
+        return entries(ids.toArray());
+    }
+
+    /* Method: buildDecadeIndex(decade) */
+
+    /**
+     * Sorts the ranked names of the given decade once, so that later
+     * topNames calls for that decade only copy the first n ids instead
+     * of scanning the whole database.
+     */
+    public void buildDecadeIndex(int decade) {
+        checkDecade(decade);
+        long[] keys = scan((from, to) -> {
+            long[] part = new long[to - from];
+            int count = 0;
+            for (int id = from; id < to; id++) {
+                int rank = columns.rank(id, decade);
+                if (rank > 0) {
+                    part[count++] = TopN.key(rank, id);
+                }
+            }
+            return Arrays.copyOf(part, count);
+        }, (a, b) -> {
+            long[] both = Arrays.copyOf(a, a.length + b.length);
+            System.arraycopy(b, 0, both, a.length, b.length);
+            return both;
+        });
+        Arrays.parallelSort(keys);
+        int[] index = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            index[i] = TopN.id(keys[i]);
+        }
+        synchronized (decadeIndexes) {
+            decadeIndexes[decade] = index;
+        }
+    }
+
+    private int[] decadeIndex(int decade) {
+        synchronized (decadeIndexes) {
+            return decadeIndexes[decade];
+        }
+    }
+
+    private void checkDecade(int decade) {
+        if (decade < 0 || decade >= columns.decades()) {
+            throw new IllegalArgumentException("Decade index out of range: " + decade);
+        }
+    }
+
+    private static void checkCount(int n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("Number of names must not be negative: " + n);
+        }
+    }
+
+    /**
+     * Treats a missing rank the way the graph draws it.
+     */
+    private static int graphRank(int rank) {
+        return rank == 0 ? MAX_RANK : rank;
+    }
+
+    private List<NameSurferEntry> entries(int[] ids) {
+        List<NameSurferEntry> result = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            result.add(new NameSurferEntry(columns, id));
+        }
+        return result;
+    }
+
+    /**
+     * Scans all name ids in parallel: leaf computes a partial result for
+     * a range of ids, and merge combines two partial results of adjacent
+     * ranges, left one first.
+     */
+    private <T> T scan(RangeScan<T> leaf, BinaryOperator<T> merge) {
+        return ForkJoinPool.commonPool().invoke(new ScanTask<>(leaf, merge, 0, columns.size()));
+    }
+
+    /* Computes the partial result for the ids in [from, to). */
+    private interface RangeScan<T>{
+        T scan(int from, int to);
+    }
+
+    private static final class ScanTask<T> extends RecursiveTask<T>{
+        private static final long serialVersionUID = 1L;
+
+        private final RangeScan<T> leaf;
+        private final BinaryOperator<T> merge;
+        private final int from;
+        private final int to;
+
+        ScanTask(RangeScan<T> leaf, BinaryOperator<T> merge, int from, int to) {
+            this.leaf = leaf;
+            this.merge = merge;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected T compute() {
+            if (to - from <= SCAN_RANGE) {
+                return leaf.scan(from, to);
+            }
+            int middle = (from + to) >>> 1;
+            ScanTask<T> right = new ScanTask<>(leaf, merge, middle, to);
+            right.fork();
+            T left = new ScanTask<>(leaf, merge, from, middle).compute();
+            return merge.apply(left, right.join());
+        }
+    }
+
+    /**
+     * Keeps the n smallest (score, id) pairs seen so far in a max-heap of
+     * primitive keys, where a key packs the score into the high and the
+     * id into the low 32 bits.  Equal scores are ordered by id.  The
+     * heap only grows as far as pairs arrive, so a huge n costs no more
+     * than the pairs there are.
+     */
+    private static final class TopN{
+        private final int limit;
+        private long[] heap;
+        private int size;
+
+        /**
+         * Creates an empty heap for the n smallest pairs, sized for the
+         * number of pairs that can be offered to it.
+         */
+        TopN(int n, int expected) {
+            limit = Math.max(0, n);
+            heap = new long[Math.min(limit, Math.max(0, expected))];
+        }
+
+        static long key(int score, int id) {
+            return ((long) score << 32) | (id & 0xFFFFFFFFL);
+        }
+
+        static int id(long key) {
+            return (int) key;
+        }
+
+        void offer(int score, int id) {
+            offer(key(score, id));
+        }
+
+        private void offer(long key) {
+            if (size < limit) {
+                if (size == heap.length) {
+                    reserve((int) Math.min(limit, Math.max(16, 2L * size)));
+                }
+                heap[size] = key;
+                siftUp(size++);
+            } else if (size > 0 && key < heap[0]) {
+                heap[0] = key;
+                siftDown(0);
+            }
+        }
+
+        TopN merge(TopN other) {
+            reserve((int) Math.min(limit, (long) size + other.size));
+            for (int i = 0; i < other.size; i++) {
+                offer(other.heap[i]);
+            }
+            return this;
+        }
+
+        private void reserve(int capacity) {
+            if (capacity > heap.length) {
+                heap = Arrays.copyOf(heap, capacity);
+            }
+        }
+
+        /**
+         * Returns the ids of the kept pairs, smallest score first.
+         */
+        int[] sortedIds() {
+            long[] keys = Arrays.copyOf(heap, size);
+            Arrays.sort(keys);
+            int[] ids = new int[size];
+            for (int i = 0; i < size; i++) {
+                ids[i] = id(keys[i]);
+            }
+            return ids;
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (heap[parent] >= heap[i]) {
+                    return;
+                }
+                swap(parent, i);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int largest = i;
+                int left = 2 * i + 1;
+                int right = left + 1;
+                if (left < size && heap[left] > heap[largest]) {
+                    largest = left;
+                }
+                if (right < size && heap[right] > heap[largest]) {
+                    largest = right;
+                }
+                if (largest == i) {
+                    return;
+                }
+                swap(i, largest);
+                i = largest;
+            }
+        }
+
+        private void swap(int a, int b) {
+            long t = heap[a];
+            heap[a] = heap[b];
+            heap[b] = t;
+        }
+    }
+
+    /**
+     * A growable list of primitive ids.
+     */
+    private static final class IdList{
+        private int[] ids = new int[16];
+        private int size;
+
+        void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+
+        IdList addAll(IdList other) {
+            if (size + other.size > ids.length) {
+                ids = Arrays.copyOf(ids, Math.max(size + other.size, size * 2));
+            }
+            System.arraycopy(other.ids, 0, ids, size, other.size);
+            size += other.size;
+            return this;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(ids, size);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package name_surfer;
+
+/*
+ * File: NameSurferSeriesLayer.java
+ * --------------------------------
+ * This class draws the series of many entries into one off-screen
+ * image with Java2D, instead of creating graphical objects for every
+ * line, label and point.  It is the level-of-detail path of the graph:
+ * every series becomes one polyline, a label is only drawn where it
+ * does not overlap a label drawn before it, and points are left out
+ * when they would be smaller than a pixel.  Shapes are drawn without
+ * antialiasing, which costs about ten times as much for thin lines.
+ *
+ * A layer belongs to the one thread that draws it.  An image handed
+ * out by publish() is never drawn into again: the next reset starts a
+ * new image, and the next draw continues on a copy of it, so another
+ * thread can show the published image while the layer goes on.
+ */
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+final class NameSurferSeriesLayer implements NameSurferConstants{
+
+    /* The side of one cell of the label occupancy grid, in pixels. */
+    private static final int CELL_SIZE = 4;
+
+    /* The image the series are drawn into, transparent where nothing is drawn. */
+    private BufferedImage image;
+
+    /* Whether the image has been handed out by publish(). */
+    private boolean published;
+
+    /* The layout the image is drawn with. */
+    private NameSurferLayout layout;
+
+    /* The label font and its metrics. */
+    private Font font;
+    private FontMetrics metrics;
+
+    /* One flag per CELL_SIZE x CELL_SIZE cell that is already covered by a label. */
+    private boolean[] occupied;
+    private int cellsX;
+    private int cellsY;
+
+    /**
+     * Starts an empty layer for the given layout.  The image is reused
+     * when its size has not changed and it has not been published.
+     */
+    void reset(NameSurferLayout layout, Font font) {
+        this.layout = layout;
+        this.font = font;
+        int width = Math.max(1, layout.width());
+        int height = Math.max(1, layout.height());
+        if (image == null || published || image.getWidth() != width || image.getHeight() != height) {
+            image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            published = false;
+        } else {
+            Graphics2D g = image.createGraphics();
+            g.setComposite(AlphaComposite.Clear);
+            g.fillRect(0, 0, width, height);
+            g.dispose();
+        }
+        cellsX = (width + CELL_SIZE - 1) / CELL_SIZE;
+        cellsY = (height + CELL_SIZE - 1) / CELL_SIZE;
+        occupied = new boolean[cellsX * cellsY];
+
+        Graphics2D g = image.createGraphics();
+        metrics = g.getFontMetrics(font);
+        g.dispose();
+    }
+
+    /**
+     * Returns the image with everything drawn since the last reset.  The
+     * layer does not change the returned image any more.
+     */
+    BufferedImage publish() {
+        published = true;
+        return image;
+    }
+
+    /* Method: draw(entry, entryIndex) */
+
+    /**
+     * Draws the series of one entry on top of the layer: its polyline,
+     * the labels that still find a free place, and its points.
+     */
+    void draw(NameSurferEntry entry, int entryIndex) {
+        int[] xs = new int[NDECADES];
+        int[] ys = new int[NDECADES];
+        for (int j = 0; j < NDECADES; j++) {
+            xs[j] = (int) Math.round(layout.decadeX(j));
+            ys[j] = (int) Math.round(layout.rankY(entry.getRank(j)));
+        }
+
+        if (published) {
+            BufferedImage copy = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
+            image.copyData(copy.getRaster());
+            image = copy;
+            published = false;
+        }
+
+        Graphics2D g = image.createGraphics();
+        g.setColor(NameSurferGraphResources.color(entryIndex));
+        g.drawPolyline(xs, ys, NDECADES);
+
+        // Labels: name and rank together, only where nothing is drawn yet.
+        g.setFont(font);
+        String name = entry.getName();
+        int nameWidth = metrics.stringWidth(name);
+        for (int j = 0; j < NDECADES; j++) {
+            String rank = NameSurferLayout.rankText(entry.getRank(j));
+            int width = nameWidth + metrics.stringWidth(rank);
+            int top = ys[j] - metrics.getAscent();
+            if (claim(xs[j], top, width, metrics.getHeight())) {
+                g.drawString(name + rank, xs[j], ys[j]);
+            }
+        }
+
+        // Points: left out when they would be smaller than a pixel.
+        double diameter = layout.scaledPointDiameter();
+        if (diameter >= 1) {
+            int size = (int) Math.round(diameter);
+            for (int j = 0; j < NDECADES; j++) {
+                g.fillOval(xs[j] - size / 2, ys[j] - size / 2, size, size);
+            }
+        }
+        g.dispose();
+    }
+
+    /**
+     * Marks the cells under the given rectangle as used, if none of them
+     * is used yet.  Returns false and marks nothing if any cell is taken.
+     */
+    private boolean claim(int x, int y, int width, int height) {
+        int fromX = Math.max(0, x / CELL_SIZE);
+        int fromY = Math.max(0, y / CELL_SIZE);
+        int toX = Math.min(cellsX - 1, (x + width) / CELL_SIZE);
+        int toY = Math.min(cellsY - 1, (y + height) / CELL_SIZE);
+        if (fromX > toX || fromY > toY) {
+            return false;
+        }
+        for (int cy = fromY; cy <= toY; cy++) {
+            for (int cx = fromX; cx <= toX; cx++) {
+                if (occupied[cy * cellsX + cx]) {
+                    return false;
+                }
+            }
+        }
+        for (int cy = fromY; cy <= toY; cy++) {
+            for (int cx = fromX; cx <= toX; cx++) {
+                occupied[cy * cellsX + cx] = true;
+            }
+        }
+        return true;
+    }
+}
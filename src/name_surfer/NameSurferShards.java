@@ -0,0 +1,270 @@
+package name_surfer;
+
+/*
+ * File: NameSurferShards.java
+ * ---------------------------
+ * This class combines several data files into one dataset, for
+ * example one file per region or per range of decades.  The shards
+ * are listed in a manifest file with one line per shard:
+ *
+ *     region  firstYear  decades  file
+ *
+ * such as "us 1900 6 names-us-1900.txt".  Lines starting with '#'
+ * are comments, and file names are relative to the manifest.
+ *
+ * A shard is only loaded the first time a lookup needs it.  The
+ * loaded shards are kept in least-recently-used order, and when
+ * their columns and indexes together take more than the memory budget, the
+ * coldest ones are dropped and loaded again (from their snapshots)
+ * if they are needed later.  A lookup that touches several shards
+ * looks them up in parallel and merges the ranks into one entry per
+ * region, which covers the decades of all shards of the region.
+ */
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+public class NameSurferShards implements NameSurferConstants{
+
+    /* The shards in manifest order. */
+    private final List<Shard> shards = new ArrayList<>();
+
+    /* The regions in manifest order, each with its shards. */
+    private final Map<String, List<Shard>> regions = new LinkedHashMap<>();
+
+    /* The loaded shards, least recently used first; guarded by itself. */
+    private final LinkedHashMap<Shard, NameSurferDataBase> loaded = new LinkedHashMap<>(16, 0.75f, true);
+
+    /* The number of bytes the loaded shards may take together. */
+    private final long memoryBudget;
+
+    /* Constructor: NameSurferShards(manifest) */
+
+    /**
+     * Reads the manifest and prepares its shards without loading any
+     * of them.  The loaded shards may use a quarter of the maximum heap.
+     */
+    public NameSurferShards(String manifest) throws IOException {
+        this(manifest, Runtime.getRuntime().maxMemory() / 4);
+    }
+
+    /* Constructor: NameSurferShards(manifest, memoryBudget) */
+
+    /**
+     * Reads the manifest and prepares its shards; the loaded shards may
+     * take at most memoryBudget bytes, except for the one shard that is
+     * in use, which is never dropped.
+     */
+    public NameSurferShards(String manifest, long memoryBudget) throws IOException {
+        this.memoryBudget = memoryBudget;
+        Path path = Paths.get(manifest);
+        Path directory = path.toAbsolutePath().getParent();
+        List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            Shard shard = parseShard(line, directory, manifest + ":" + (i + 1));
+            shards.add(shard);
+            regions.computeIfAbsent(shard.region, r -> new ArrayList<>()).add(shard);
+        }
+    }
+
+    private static Shard parseShard(String line, Path directory, String where) {
+        String[] fields = line.split("\\s+", 4);
+        if (fields.length != 4) {
+            throw new IllegalArgumentException(where + ": expected region, first year, decades and file");
+        }
+        int firstYear;
+        int decades;
+        try {
+            firstYear = Integer.parseInt(fields[1]);
+            decades = Integer.parseInt(fields[2]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(where + ": " + e.getMessage());
+        }
+        if ((firstYear - START_DECADE) % DECADE_STEP != 0 || decades <= 0) {
+            throw new IllegalArgumentException(where + ": shard does not start on a decade");
+        }
+        return new Shard(fields[0], (firstYear - START_DECADE) / DECADE_STEP, decades,
+                directory.resolve(fields[3]).toString());
+    }
+
+    /**
+     * Returns the regions of the manifest, in manifest order.
+     */
+    public Set<String> getRegions() {
+        return Collections.unmodifiableSet(regions.keySet());
+    }
+
+    /* Method: findEntry(region, name) */
+
+    /**
+     * Looks the name up in all shards of the region at once and returns
+     * one entry with the ranks of every shard, or null if no shard of
+     * the region has the name.  The entry covers the decades of all
+     * shards of the region, also those outside the graph's range, and
+     * getRank takes the decades of the graph.
+     */
+    public NameSurferEntry findEntry(String region, String name) {
+        List<Shard> regionShards = regions.get(region);
+        if (regionShards == null) {
+            return null;
+        }
+        return mergeRegion(name, lookUp(regionShards, name), regionShards);
+    }
+
+    /* Method: findEntries(name, regions) */
+
+    /**
+     * Looks the name up in the shards of the given regions, or of all
+     * regions if none are given, in parallel.  Returns the merged entry
+     * of every region that has the name, in manifest order.
+     */
+    public Map<String, NameSurferEntry> findEntries(String name, String... wanted) {
+        Collection<String> names = wanted.length == 0 ? regions.keySet() : Arrays.asList(wanted);
+        List<Shard> selected = new ArrayList<>();
+        for (Shard shard : shards) {
+            if (names.contains(shard.region)) {
+                selected.add(shard);
+            }
+        }
+        Map<Shard, NameSurferEntry> found = lookUp(selected, name);
+
+        Map<String, NameSurferEntry> result = new LinkedHashMap<>();
+        for (Map.Entry<String, List<Shard>> region : regions.entrySet()) {
+            if (names.contains(region.getKey())) {
+                NameSurferEntry entry = mergeRegion(name, found, region.getValue());
+                if (entry != null) {
+                    result.put(region.getKey(), entry);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Looks the name up in every given shard in parallel.  The entries
+     * are copied out of the shards, so that they stay valid when a shard
+     * is dropped later; shards without the name are left out.
+     */
+    private Map<Shard, NameSurferEntry> lookUp(List<Shard> selected, String name) {
+        List<CompletableFuture<NameSurferEntry>> lookups = new ArrayList<>(selected.size());
+        for (Shard shard : selected) {
+            lookups.add(CompletableFuture.supplyAsync(() -> {
+                NameSurferEntry entry = dataBase(shard).findEntry(name);
+                return entry == null ? null : entry.detach();
+            }));
+        }
+        Map<Shard, NameSurferEntry> found = new HashMap<>();
+        for (int i = 0; i < selected.size(); i++) {
+            NameSurferEntry entry = lookups.get(i).join();
+            if (entry != null) {
+                found.put(selected.get(i), entry);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Merges the ranks of the region's shards into one entry that spans
+     * from the first to the last decade of any of them, starting at the
+     * first.  Where shards overlap, the later shard in the manifest wins.
+     */
+    private NameSurferEntry mergeRegion(String name, Map<Shard, NameSurferEntry> found,
+                                        Collection<Shard> regionShards) {
+        int firstDecade = Integer.MAX_VALUE;
+        int endDecade = Integer.MIN_VALUE;
+        for (Shard shard : regionShards) {
+            firstDecade = Math.min(firstDecade, shard.firstDecade);
+            endDecade = Math.max(endDecade, shard.firstDecade + shard.decades);
+        }
+        if (firstDecade > endDecade) {
+            return null;
+        }
+        int[] ranks = new int[endDecade - firstDecade];
+        String foundName = null;
+        for (Shard shard : shards) {
+            NameSurferEntry entry = found.get(shard);
+            if (entry == null || !regionShards.contains(shard)) {
+                continue;
+            }
+            foundName = entry.getName();
+            for (int d = 0; d < shard.decades; d++) {
+                ranks[shard.firstDecade + d - firstDecade] = entry.getRank(d);
+            }
+        }
+        return foundName == null ? null : new NameSurferEntry(foundName, firstDecade, ranks);
+    }
+
+    /**
+     * Returns the database of the shard, loading it if needed, and drops
+     * the least recently used other shards while the loaded ones take
+     * more than the memory budget.
+     */
+    private NameSurferDataBase dataBase(Shard shard) {
+        synchronized (loaded) {
+            NameSurferDataBase dataBase = loaded.get(shard);
+            if (dataBase != null) {
+                return dataBase;
+            }
+        }
+        // Only one thread loads a shard; others wait for it here.
+        NameSurferDataBase dataBase;
+        synchronized (shard) {
+            synchronized (loaded) {
+                dataBase = loaded.get(shard);
+            }
+            if (dataBase == null) {
+                dataBase = new NameSurferDataBase(shard.file, shard.decades, progress -> {
+                });
+                synchronized (loaded) {
+                    loaded.put(shard, dataBase);
+                    evict(shard);
+                }
+            }
+        }
+        return dataBase;
+    }
+
+    /* Drops cold shards other than the one just used, counting their columns and
+     * built indexes; called with loaded held. */
+    private void evict(Shard keep) {
+        long total = 0;
+        for (NameSurferDataBase dataBase : loaded.values()) {
+            total += dataBase.sizeInBytes();
+        }
+        Iterator<Map.Entry<Shard, NameSurferDataBase>> coldest = loaded.entrySet().iterator();
+        while (total > memoryBudget && coldest.hasNext()) {
+            Map.Entry<Shard, NameSurferDataBase> next = coldest.next();
+            if (next.getKey() != keep) {
+                total -= next.getValue().sizeInBytes();
+                coldest.remove();
+            }
+        }
+    }
+
+    /**
+     * One line of the manifest.  The first decade counts from
+     * START_DECADE, like the decade indexes of the graph.
+     */
+    private static final class Shard{
+        final String region;
+        final int firstDecade;
+        final int decades;
+        final String file;
+
+        Shard(String region, int firstDecade, int decades, String file) {
+            this.region = region;
+            this.firstDecade = firstDecade;
+            this.decades = decades;
+            this.file = file;
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package name_surfer;
+
+/*
+ * File: NameSurferSnapshot.java
+ * -----------------------------
+ * This class writes NameSurferColumns to a compact binary snapshot
+ * and opens such snapshots again through a read-only memory map,
+ * so that the database does not have to parse the text file on
+ * every start.  Opening a snapshot only reads and checks its header,
+ * and the pages of the columns are loaded by the operating system
+ * when they are first touched.  The payload checksum and the bounds
+ * of the offsets and hash slots are checked in the background; a
+ * snapshot that fails is deleted, so the next start parses the text
+ * file again.  A freshly written snapshot is not read back, since its
+ * payload comes from columns that were just built.
+ *
+ * Layout (all numbers little-endian):
+ *   header      HEADER_SIZE bytes, see header()
+ *   offsets     int[count + 1], start of every name
+ *   ranks       int[count * decades], the rank matrix
+ *   hash index  int[capacity], the prebuilt lookup table
+ *   names       the sorted UTF-8 name dictionary
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.CRC32;
+
+final class NameSurferSnapshot{
+
+    /* "NSDB" in ASCII, the first four bytes of every snapshot. */
+    private static final int MAGIC = 0x4E534442;
+
+    /* The format version; bump it whenever the layout changes. */
+    static final int VERSION = 1;
+
+    /* The size of the header in bytes, including its own checksum. */
+    private static final int HEADER_SIZE = 64;
+
+    /* How many bytes are written to the file at a time. */
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+    private NameSurferSnapshot() {
+    }
+
+    /* Method: isFresh(snapshot, source) */
+
+    /**
+     * Returns true if the snapshot exists and is not older than the text
+     * file it was built from.  A missing text file leaves the snapshot
+     * as the only source, so it counts as fresh.
+     */
+    static boolean isFresh(Path snapshot, Path source) throws IOException {
+        if (!Files.isRegularFile(snapshot)) {
+            return false;
+        }
+        return !Files.exists(source)
+                || Files.getLastModifiedTime(snapshot).compareTo(Files.getLastModifiedTime(source)) >= 0;
+    }
+
+    /* Method: write(columns, snapshot) */
+
+    /**
+     * Writes the columns to the snapshot file.  The data goes to a
+     * temporary file first, which then replaces the snapshot, so a
+     * reader never sees a half-written file.
+     */
+    static void write(NameSurferColumns columns, Path snapshot) throws IOException {
+        Path temporary = snapshot.resolveSibling(snapshot.getFileName() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                CRC32 crc = new CRC32();
+                ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                channel.position(HEADER_SIZE);
+                writeInts(channel, buffer, columns.nameOffsets(), crc);
+                writeInts(channel, buffer, columns.ranks(), crc);
+                writeInts(channel, buffer, columns.hashIndex(), crc);
+                writeBytes(channel, buffer, columns.nameBytes(), crc);
+
+                channel.position(0);
+                channel.write(header(columns, crc.getValue()));
+                channel.force(false);
+            }
+            Files.move(temporary, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /* Method: open(snapshot) */
+
+    /**
+     * Maps the snapshot read-only and returns columns that read straight
+     * from the mapping.  Only the header checksum and the section sizes
+     * are checked before returning; the payload checksum, the name
+     * offsets and the hash slots touch every page and are checked on
+     * the common pool.  Throws an IOException if the header is not the
+     * one of a valid snapshot.
+     */
+    static NameSurferColumns open(Path snapshot) throws IOException {
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_SIZE) {
+                throw new IOException("Snapshot is too short: " + snapshot);
+            }
+            if (fileSize > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot is larger than 2 GB: " + snapshot);
+            }
+            MappedByteBuffer file = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            file.order(ByteOrder.LITTLE_ENDIAN);
+
+            CRC32 headerCrc = new CRC32();
+            headerCrc.update(file.duplicate().position(0).limit(HEADER_SIZE - 4));
+            if (file.getInt(0) != MAGIC) {
+                throw new IOException("Not a NameSurfer snapshot: " + snapshot);
+            }
+            if (file.getInt(4) != VERSION) {
+                throw new IOException("Unsupported snapshot version " + file.getInt(4) + ": " + snapshot);
+            }
+            if ((int) headerCrc.getValue() != file.getInt(HEADER_SIZE - 4)) {
+                throw new IOException("Snapshot header is corrupt: " + snapshot);
+            }
+
+            int decades = file.getInt(8);
+            int count = file.getInt(12);
+            int capacity = file.getInt(16);
+            int nameLength = file.getInt(20);
+            long payloadCrc = file.getLong(24);
+            // The lookup masks hashes with capacity - 1 and needs at least one empty slot to stop probing.
+            if (decades <= 0 || count < 0 || nameLength < 0
+                    || Integer.bitCount(capacity) != 1 || capacity <= count) {
+                throw new IOException("Snapshot header has invalid sizes: " + snapshot);
+            }
+
+            long offsetsStart = HEADER_SIZE;
+            long ranksStart = offsetsStart + 4L * (count + 1);
+            long hashStart = ranksStart + 4L * count * decades;
+            long namesStart = hashStart + 4L * capacity;
+            if (namesStart + nameLength != fileSize) {
+                throw new IOException("Snapshot size does not match its header: " + snapshot);
+            }
+
+            IntBuffer offsets = slice(file, offsetsStart, 4L * (count + 1)).asIntBuffer();
+            IntBuffer hashIndex = slice(file, hashStart, 4L * capacity).asIntBuffer();
+            CompletableFuture.runAsync(() -> {
+                try {
+                    verifyPayload(snapshot, file, payloadCrc, offsets.duplicate(), nameLength,
+                            hashIndex.duplicate(), count);
+                } catch (IOException e) {
+                    System.err.println(e.getMessage() + ", deleting it");
+                    try {
+                        Files.deleteIfExists(snapshot);
+                    } catch (IOException deleteError) {
+                        System.err.println("Error deleting snapshot: " + deleteError.getMessage());
+                    }
+                }
+            });
+
+            return new NameSurferColumns(
+                    slice(file, namesStart, nameLength),
+                    offsets,
+                    slice(file, ranksStart, 4L * count * decades).asIntBuffer(),
+                    decades,
+                    hashIndex);
+        }
+    }
+
+    /**
+     * Checks the payload checksum, that the name offsets start at 0 and
+     * never decrease up to the end of the dictionary, and that every hash
+     * slot is empty or holds the id of a name, with no more names than
+     * there are, so that no lookup can read outside the columns or probe
+     * forever.
+     */
+    private static void verifyPayload(Path snapshot, ByteBuffer file, long payloadCrc, IntBuffer offsets,
+                                      int nameLength, IntBuffer hashIndex, int count) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(file.duplicate().position(HEADER_SIZE));
+        if (crc.getValue() != payloadCrc) {
+            throw new IOException("Snapshot checksum mismatch: " + snapshot);
+        }
+        if (offsets.get(0) != 0 || offsets.get(count) != nameLength) {
+            throw new IOException("Snapshot name offsets do not cover the names: " + snapshot);
+        }
+        for (int id = 0; id < count; id++) {
+            if (offsets.get(id) > offsets.get(id + 1)) {
+                throw new IOException("Snapshot name offsets are out of order: " + snapshot);
+            }
+        }
+        int used = 0;
+        for (int slot = 0; slot < hashIndex.limit(); slot++) {
+            int id = hashIndex.get(slot);
+            if (id == NameSurferColumns.EMPTY_SLOT) {
+                continue;
+            }
+            if (id < 0 || id >= count || ++used > count) {
+                throw new IOException("Snapshot hash index is corrupt: " + snapshot);
+            }
+        }
+    }
+
+    /**
+     * Builds the header: magic, version, decades, name count, hash index
+     * capacity, dictionary length, payload checksum and, in the last four
+     * bytes, the checksum of the header itself.
+     */
+    private static ByteBuffer header(NameSurferColumns columns, long payloadCrc) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putInt(columns.decades());
+        header.putInt(columns.size());
+        header.putInt(columns.hashIndex().remaining());
+        header.putInt(columns.nameBytes().remaining());
+        header.putLong(payloadCrc);
+
+        CRC32 crc = new CRC32();
+        crc.update(header.array(), 0, HEADER_SIZE - 4);
+        header.putInt(HEADER_SIZE - 4, (int) crc.getValue());
+        header.clear();
+        return header;
+    }
+
+    private static ByteBuffer slice(ByteBuffer file, long start, long length) {
+        return file.duplicate().position((int) start).limit((int) (start + length))
+                .slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static void writeInts(FileChannel channel, ByteBuffer buffer, IntBuffer values, CRC32 crc)
+            throws IOException {
+        while (values.hasRemaining()) {
+            buffer.clear();
+            while (values.hasRemaining() && buffer.remaining() >= 4) {
+                buffer.putInt(values.get());
+            }
+            flush(channel, buffer, crc);
+        }
+    }
+
+    private static void writeBytes(FileChannel channel, ByteBuffer buffer, ByteBuffer values, CRC32 crc)
+            throws IOException {
+        while (values.hasRemaining()) {
+            buffer.clear();
+            while (values.hasRemaining() && buffer.hasRemaining()) {
+                buffer.put(values.get());
+            }
+            flush(channel, buffer, crc);
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer, CRC32 crc) throws IOException {
+        buffer.flip();
+        crc.update(buffer.duplicate());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
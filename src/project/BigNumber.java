@@ -0,0 +1,352 @@
+package project;
+
+import java.util.Arrays;
+
+/**
+ * An immutable arbitrary-precision integer for long decimal numbers such as identifiers and checksums.
+ * The magnitude is kept in int limbs of base 10^9, least significant limb first, so that every limb
+ * is exactly nine decimal digits: parsing and formatting are a single pass over the digits,
+ * and addition and subtraction handle nine digits per step instead of one.
+ * Multiplication is schoolbook for short numbers and Karatsuba above KARATSUBA_THRESHOLD limbs.
+ */
+public final class BigNumber implements Comparable<BigNumber>{
+
+    static final int BASE = 1_000_000_000;          // Value of one limb position
+    static final int DIGITS_PER_LIMB = 9;            // Decimal digits in one limb
+    static final int KARATSUBA_THRESHOLD = 128;      // Limbs below which schoolbook multiplication is faster
+    private static final int ROWS_PER_CARRY = 8;     // Limb products a column takes between two carries
+
+    public static final BigNumber ZERO = new BigNumber(0, new int[0]);
+    public static final BigNumber ONE = new BigNumber(1, new int[]{1});
+
+    private final int signum;       // -1, 0 or 1
+    private final int[] mag;        // Limbs of the magnitude, least significant first, without leading zero limbs
+
+    private BigNumber(int signum, int[] mag) {
+        this.signum = mag.length == 0 ? 0 : signum;
+        this.mag = mag;
+    }
+
+    /**
+     * Makes a number from limbs, which may have leading zero limbs; the array is taken over, not copied.
+     */
+    static BigNumber fromLimbs(int signum, int[] limbs) {
+        return new BigNumber(signum, trim(limbs));
+    }
+
+    /**
+     * Parses a decimal number with an optional sign.
+     *
+     * @param s The digits, optionally preceded by '-' or '+'.
+     * @return The number.
+     * @throws NumberFormatException If the string is empty or contains anything but digits after the sign.
+     */
+    public static BigNumber parse(String s) {
+        int start = 0;
+        int signum = 1;
+        if (!s.isEmpty() && (s.charAt(0) == '-' || s.charAt(0) == '+')) {
+            signum = s.charAt(0) == '-' ? -1 : 1;
+            start = 1;
+        }
+        int digits = s.length() - start;
+        if (digits == 0) {
+            throw new NumberFormatException("No digits in \"" + s + "\"");
+        }
+        // Every limb is the next nine digits from the right; the leftmost limb may be shorter.
+        int[] limbs = new int[(digits + DIGITS_PER_LIMB - 1) / DIGITS_PER_LIMB];
+        int end = s.length();
+        for (int i = 0; i < limbs.length; i++) {
+            int from = Math.max(start, end - DIGITS_PER_LIMB);
+            int limb = 0;
+            for (int j = from; j < end; j++) {
+                int digit = s.charAt(j) - '0';
+                if (digit < 0 || digit > 9) {
+                    throw new NumberFormatException("Not a digit '" + s.charAt(j) + "' in \"" + s + "\"");
+                }
+                limb = limb * 10 + digit;
+            }
+            limbs[i] = limb;
+            end = from;
+        }
+        return fromLimbs(signum, limbs);
+    }
+
+    public static BigNumber valueOf(long value) {
+        if (value == 0) {
+            return ZERO;
+        }
+        int signum = value < 0 ? -1 : 1;
+        int[] limbs = new int[3];
+        // Long.MIN_VALUE has no positive counterpart, so the limbs are taken from the negative value.
+        long v = value < 0 ? value : -value;
+        for (int i = 0; v != 0; i++) {
+            limbs[i] = (int) -(v % BASE);
+            v /= BASE;
+        }
+        return fromLimbs(signum, limbs);
+    }
+
+    public int signum() {
+        return signum;
+    }
+
+    public boolean isZero() {
+        return signum == 0;
+    }
+
+    public BigNumber negate() {
+        return new BigNumber(-signum, mag);
+    }
+
+    /**
+     * Returns the limbs of the magnitude, least significant first. The array must not be changed.
+     */
+    int[] limbs() {
+        return mag;
+    }
+
+    public BigNumber add(BigNumber other) {
+        if (other.signum == 0) {
+            return this;
+        }
+        if (signum == 0) {
+            return other;
+        }
+        if (signum == other.signum) {
+            return new BigNumber(signum, addMagnitudes(mag, other.mag));
+        }
+        int cmp = compareMagnitudes(mag, other.mag);
+        if (cmp == 0) {
+            return ZERO;
+        }
+        return cmp > 0 ? new BigNumber(signum, subtractMagnitudes(mag, other.mag))
+                : new BigNumber(other.signum, subtractMagnitudes(other.mag, mag));
+    }
+
+    public BigNumber subtract(BigNumber other) {
+        return add(other.negate());
+    }
+
+    public BigNumber multiply(BigNumber other) {
+        if (signum == 0 || other.signum == 0) {
+            return ZERO;
+        }
+        return new BigNumber(signum * other.signum, multiplyMagnitudes(mag, other.mag));
+    }
+
+    public BigNumber square() {
+        return multiply(this);
+    }
+
+    /**
+     * Adds two magnitudes.
+     */
+    static int[] addMagnitudes(int[] a, int[] b) {
+        if (a.length < b.length) {
+            int[] t = a;
+            a = b;
+            b = t;
+        }
+        int[] sum = new int[a.length + 1];
+        int carry = 0;
+        for (int i = 0; i < a.length; i++) {
+            int s = a[i] + (i < b.length ? b[i] : 0) + carry;
+            carry = s >= BASE ? 1 : 0;
+            sum[i] = s - carry * BASE;
+        }
+        sum[a.length] = carry;
+        return trim(sum);
+    }
+
+    /**
+     * Subtracts the magnitude b from the magnitude a, which must not be smaller.
+     */
+    static int[] subtractMagnitudes(int[] a, int[] b) {
+        int[] difference = new int[a.length];
+        int borrow = 0;
+        for (int i = 0; i < a.length; i++) {
+            int d = a[i] - (i < b.length ? b[i] : 0) - borrow;
+            borrow = d < 0 ? 1 : 0;
+            difference[i] = d + borrow * BASE;
+        }
+        return trim(difference);
+    }
+
+    static int compareMagnitudes(int[] a, int[] b) {
+        if (a.length != b.length) {
+            return a.length < b.length ? -1 : 1;
+        }
+        for (int i = a.length - 1; i >= 0; i--) {
+            if (a[i] != b[i]) {
+                return a[i] < b[i] ? -1 : 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Multiplies two magnitudes: schoolbook when either is shorter than KARATSUBA_THRESHOLD limbs,
+     * otherwise Karatsuba, which splits both at half of the longer one and needs three half-size products
+     * instead of four: a * b = z2 * B^2h + ((a0 + a1)(b0 + b1) - z2 - z0) * B^h + z0.
+     */
+    static int[] multiplyMagnitudes(int[] a, int[] b) {
+        if (a.length < KARATSUBA_THRESHOLD || b.length < KARATSUBA_THRESHOLD) {
+            return multiplySchoolbook(a, b);
+        }
+        int half = (Math.max(a.length, b.length) + 1) / 2;
+        int[] a0 = low(a, half), a1 = high(a, half);
+        int[] b0 = low(b, half), b1 = high(b, half);
+        int[] z0 = multiplyMagnitudes(a0, b0);
+        int[] z2 = multiplyMagnitudes(a1, b1);
+        int[] z1 = multiplyMagnitudes(addMagnitudes(a0, a1), addMagnitudes(b0, b1));
+        z1 = subtractMagnitudes(subtractMagnitudes(z1, z0), z2);
+
+        int[] product = new int[a.length + b.length + 1];
+        addInto(product, z0, 0);
+        addInto(product, z1, half);
+        addInto(product, z2, 2 * half);
+        return trim(product);
+    }
+
+    /**
+     * Multiplies two magnitudes row by row into long columns. A limb product is below 10^18, so a column
+     * can take ROWS_PER_CARRY products before it could overflow; only then are the carries propagated.
+     * The inner loop is then a plain multiply-add, which the JIT compiles into tight code.
+     */
+    static int[] multiplySchoolbook(int[] a, int[] b) {
+        if (a.length == 0 || b.length == 0) {
+            return new int[0];
+        }
+        if (a.length < b.length) {
+            int[] t = a;
+            a = b;
+            b = t;
+        }
+        long[] columns = new long[a.length + b.length];
+        for (int i = 0; i < b.length; i++) {
+            long bi = b[i];
+            for (int j = 0; j < a.length; j++) {
+                columns[i + j] += bi * a[j];
+            }
+            if (i % ROWS_PER_CARRY == ROWS_PER_CARRY - 1) {
+                carry(columns, i - ROWS_PER_CARRY + 1, i + a.length);
+            }
+        }
+        carry(columns, 0, columns.length);
+        int[] product = new int[columns.length];
+        for (int k = 0; k < columns.length; k++) {
+            product[k] = (int) columns[k];
+        }
+        return trim(product);
+    }
+
+    /**
+     * Reduces the columns in [from, to) to limbs below BASE; the last carry goes on into the columns above.
+     */
+    private static void carry(long[] columns, int from, int to) {
+        long carry = 0;
+        int k = from;
+        for (; k < to; k++) {
+            long t = columns[k] + carry;
+            carry = t / BASE;
+            columns[k] = t - carry * BASE;
+        }
+        for (; carry != 0; k++) {
+            long t = columns[k] + carry;
+            carry = t / BASE;
+            columns[k] = t - carry * BASE;
+        }
+    }
+
+    /**
+     * Adds the magnitude x, shifted left by offset limbs, to the limbs of target, which must have room for the sum.
+     */
+    static void addInto(int[] target, int[] x, int offset) {
+        int carry = 0;
+        int i = 0;
+        for (; i < x.length; i++) {
+            int s = target[offset + i] + x[i] + carry;
+            carry = s >= BASE ? 1 : 0;
+            target[offset + i] = s - carry * BASE;
+        }
+        for (int k = offset + i; carry != 0; k++) {
+            int s = target[k] + carry;
+            carry = s >= BASE ? 1 : 0;
+            target[k] = s - carry * BASE;
+        }
+    }
+
+    private static int[] low(int[] limbs, int n) {
+        return trim(Arrays.copyOf(limbs, Math.min(n, limbs.length)));
+    }
+
+    private static int[] high(int[] limbs, int n) {
+        return limbs.length <= n ? new int[0] : Arrays.copyOfRange(limbs, n, limbs.length);
+    }
+
+    /**
+     * Drops leading zero limbs.
+     */
+    static int[] trim(int[] limbs) {
+        int length = limbs.length;
+        while (length > 0 && limbs[length - 1] == 0) {
+            length--;
+        }
+        return length == limbs.length ? limbs : Arrays.copyOf(limbs, length);
+    }
+
+    @Override
+    public int compareTo(BigNumber other) {
+        if (signum != other.signum) {
+            return signum < other.signum ? -1 : 1;
+        }
+        return signum * compareMagnitudes(mag, other.mag);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof BigNumber)) {
+            return false;
+        }
+        BigNumber other = (BigNumber) o;
+        return signum == other.signum && Arrays.equals(mag, other.mag);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * signum + Arrays.hashCode(mag);
+    }
+
+    /**
+     * Formats the number in decimal: the top limb as it is, every other limb as exactly nine digits.
+     */
+    @Override
+    public String toString() {
+        if (signum == 0) {
+            return "0";
+        }
+        int top = mag[mag.length - 1];
+        int topDigits = 1;
+        for (int t = top; t >= 10; t /= 10) {
+            topDigits++;
+        }
+        int sign = signum < 0 ? 1 : 0;
+        char[] chars = new char[sign + topDigits + (mag.length - 1) * DIGITS_PER_LIMB];
+        if (sign == 1) {
+            chars[0] = '-';
+        }
+        int end = chars.length;
+        for (int i = 0; i < mag.length - 1; i++) {
+            int limb = mag[i];
+            for (int d = 0; d < DIGITS_PER_LIMB; d++) {
+                chars[--end] = (char) ('0' + limb % 10);
+                limb /= 10;
+            }
+        }
+        for (int d = 0; d < topDigits; d++) {
+            chars[--end] = (char) ('0' + top % 10);
+            top /= 10;
+        }
+        return new String(chars);
+    }
+}
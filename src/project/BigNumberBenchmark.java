@@ -0,0 +1,80 @@
+package project;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+/**
+ * Compares BigNumber with java.math.BigInteger on random decimal numbers of growing length:
+ * parsing, formatting, addition, subtraction and multiplication. Every result is checked against BigInteger.
+ * <p>
+ * Usage: java project.BigNumberBenchmark [maxDigits] [seed]
+ */
+public class BigNumberBenchmark{
+
+    private static final int MIN_TOTAL_DIGITS = 20_000_000; // Digits processed per measurement, at least
+
+    public static void main(String[] args) {
+        int maxDigits = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+        Random random = new Random(seed);
+
+        System.out.printf("%9s %-9s %12s %12s %8s%n", "digits", "operation", "BigNumber", "BigInteger", "ratio");
+        for (int digits = 10; digits <= maxDigits; digits *= 10) {
+            String s1 = randomDigits(random, digits);
+            String s2 = randomDigits(random, digits);
+            int repeat = Math.max(1, MIN_TOTAL_DIGITS / digits);
+            int multiplyRepeat = Math.max(1, repeat / Math.max(1, digits / 100));
+
+            BigNumber a = BigNumber.parse(s1), b = BigNumber.parse(s2);
+            BigInteger x = new BigInteger(s1), y = new BigInteger(s2);
+            check(a.add(b), x.add(y), "add");
+            check(b.subtract(a), y.subtract(x), "subtract");
+            check(a.multiply(b), x.multiply(y), "multiply");
+
+            report(digits, "parse", repeat,
+                    time(repeat, () -> BigNumber.parse(s1)), time(repeat, () -> new BigInteger(s1)));
+            report(digits, "format", repeat,
+                    time(repeat, a::toString), time(repeat, x::toString));
+            report(digits, "add", repeat,
+                    time(repeat, () -> a.add(b)), time(repeat, () -> x.add(y)));
+            report(digits, "subtract", repeat,
+                    time(repeat, () -> a.subtract(b)), time(repeat, () -> x.subtract(y)));
+            report(digits, "multiply", multiplyRepeat,
+                    time(multiplyRepeat, () -> a.multiply(b)), time(multiplyRepeat, () -> x.multiply(y)));
+        }
+    }
+
+    private static String randomDigits(Random random, int digits) {
+        char[] chars = new char[digits];
+        chars[0] = (char) ('1' + random.nextInt(9));
+        for (int i = 1; i < digits; i++) {
+            chars[i] = (char) ('0' + random.nextInt(10));
+        }
+        return new String(chars);
+    }
+
+    private static void check(BigNumber actual, BigInteger expected, String operation) {
+        if (!actual.toString().equals(expected.toString())) {
+            throw new AssertionError(operation + " differs from BigInteger");
+        }
+    }
+
+    /**
+     * Runs the operation a number of times after a warm-up and returns the nanoseconds per run.
+     */
+    private static double time(int repeat, Runnable operation) {
+        for (int i = 0; i < Math.min(repeat, 1000); i++) {
+            operation.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < repeat; i++) {
+            operation.run();
+        }
+        return (double) (System.nanoTime() - start) / repeat;
+    }
+
+    private static void report(int digits, String operation, int repeat, double bigNumber, double bigInteger) {
+        System.out.printf("%9d %-9s %9.1f us %9.1f us %7.2fx%n", digits, operation,
+                bigNumber / 1e3, bigInteger / 1e3, bigInteger / bigNumber);
+    }
+}
@@ -0,0 +1,210 @@
+package project;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Sums many nonnegative decimal numbers in parallel, with the same result as folding them with
+ * work2.addNumericStrings one after another.
+ * Every number is parsed once, nine digits at a time, straight into an Accumulator: an array of long
+ * limbs of base 10^9 to which each number is added without carrying, since a long limb can take billions
+ * of additions before it could overflow. The stream is reduced as a tree on the common fork-join pool,
+ * one accumulator per leaf, and carries are only propagated where two accumulators are merged.
+ * <p>
+ * Like addNumericStrings, the sum keeps as many digits as the longest number, so leading zeros of
+ * the inputs are kept. The sum of no numbers is "0".
+ * <p>
+ * Usage: java project.NumberSummation numbersFile [--check]
+ * <br>
+ * Sums a file with one number per line; --check also folds them with addNumericStrings and compares.
+ */
+public final class NumberSummation{
+
+    private NumberSummation() {
+    }
+
+    /**
+     * Sums the numbers of a stream in parallel.
+     *
+     * @param numbers The numbers, as strings of digits.
+     * @return The sum, padded with zeros to the length of the longest number.
+     * @throws NumberFormatException If a number contains anything but digits.
+     */
+    public static String sum(Stream<String> numbers) {
+        return numbers.parallel()
+                .collect(Accumulator::new, Accumulator::add, Accumulator::merge)
+                .toString();
+    }
+
+    /**
+     * Sums a file with one number per line in parallel. Whitespace around a number and blank lines are ignored.
+     *
+     * @param file The file.
+     * @return The sum, padded with zeros to the length of the longest number.
+     * @throws IOException           If the file cannot be read.
+     * @throws NumberFormatException If a line contains anything but digits.
+     */
+    public static String sum(Path file) throws IOException {
+        try (Stream<String> lines = Files.lines(file, StandardCharsets.US_ASCII)) {
+            return sum(lines.map(String::trim).filter(line -> !line.isEmpty()));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Sums the numbers one after another with addNumericStrings, which is what sum must equal.
+     *
+     * @param numbers The numbers, as strings of digits.
+     * @return The sum of the numbers, or "0" if there are none.
+     */
+    public static String sumSequential(List<String> numbers) {
+        if (numbers.isEmpty()) {
+            return "0";
+        }
+        String sum = numbers.get(0);
+        for (int i = 1; i < numbers.size(); i++) {
+            sum = work2.addNumericStrings(sum, numbers.get(i));
+        }
+        return sum;
+    }
+
+    /**
+     * A sum in progress: limbs of base 10^9 that may hold more than BASE until they are normalized.
+     */
+    static final class Accumulator{
+        private static final long MAX_PENDING = 1L << 33;   // Additions a normalized limb takes without overflow
+
+        private long[] limbs = new long[4];      // Least significant first
+        private long pending;                    // Numbers added since the last normalization
+        private int maxDigits;                   // Length of the longest number added
+        private boolean empty = true;            // Whether no number was added yet
+
+        /**
+         * Adds a number, parsing it nine digits at a time from the right.
+         */
+        void add(String number) {
+            int length = number.length();
+            int limbCount = (length + BigNumber.DIGITS_PER_LIMB - 1) / BigNumber.DIGITS_PER_LIMB;
+            if (limbCount >= limbs.length) {
+                limbs = Arrays.copyOf(limbs, Math.max(limbCount + 1, 2 * limbs.length));
+            }
+            int end = length;
+            for (int i = 0; i < limbCount; i++) {
+                int from = Math.max(0, end - BigNumber.DIGITS_PER_LIMB);
+                int limb = 0;
+                for (int j = from; j < end; j++) {
+                    int digit = number.charAt(j) - '0';
+                    if (digit < 0 || digit > 9) {
+                        throw new NumberFormatException("Not a digit '" + number.charAt(j) + "' in \"" + number + "\"");
+                    }
+                    limb = limb * 10 + digit;
+                }
+                limbs[i] += limb;
+                end = from;
+            }
+            maxDigits = Math.max(maxDigits, length);
+            empty = false;
+            if (++pending == MAX_PENDING) {
+                normalize();
+            }
+        }
+
+        /**
+         * Adds the other accumulator to this one and propagates the carries.
+         */
+        void merge(Accumulator other) {
+            if (other.limbs.length > limbs.length) {
+                limbs = Arrays.copyOf(limbs, other.limbs.length);
+            }
+            if (pending + other.pending >= MAX_PENDING) {
+                normalize();
+                other.normalize();
+            }
+            for (int i = 0; i < other.limbs.length; i++) {
+                limbs[i] += other.limbs[i];
+            }
+            pending += other.pending;
+            maxDigits = Math.max(maxDigits, other.maxDigits);
+            empty &= other.empty;
+            normalize();
+        }
+
+        /**
+         * Reduces every limb below BASE, carrying the rest into the next limb.
+         */
+        private void normalize() {
+            long carry = 0;
+            for (int i = 0; i < limbs.length || carry != 0; i++) {
+                if (i == limbs.length) {
+                    limbs = Arrays.copyOf(limbs, limbs.length * 2);
+                }
+                long t = limbs[i] + carry;
+                carry = t / BigNumber.BASE;
+                limbs[i] = t - carry * BigNumber.BASE;
+            }
+            pending = 0;
+        }
+
+        /**
+         * Returns the sum in decimal, padded with zeros to the length of the longest number.
+         */
+        @Override
+        public String toString() {
+            if (empty) {
+                return "0";
+            }
+            normalize();
+            int[] ints = new int[limbs.length];
+            for (int i = 0; i < ints.length; i++) {
+                ints[i] = (int) limbs[i];
+            }
+            BigNumber value = BigNumber.fromLimbs(1, ints);
+            String digits = value.isZero() && maxDigits == 0 ? "" : value.toString();
+            if (digits.length() >= maxDigits) {
+                return digits;
+            }
+            StringBuilder padded = new StringBuilder(maxDigits);
+            for (int i = digits.length(); i < maxDigits; i++) {
+                padded.append('0');
+            }
+            return padded.append(digits).toString();
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.err.println("Usage: java project.NumberSummation numbersFile [--check]");
+            System.exit(2);
+        }
+        try {
+            Path file = Paths.get(args[0]);
+            long start = System.nanoTime();
+            String sum = sum(file);
+            System.out.printf("%s%n(%.2f s in parallel)%n", sum, (System.nanoTime() - start) / 1e9);
+            if (args.length > 1 && args[1].equals("--check")) {
+                start = System.nanoTime();
+                List<String> numbers;
+                try (Stream<String> lines = Files.lines(file, StandardCharsets.US_ASCII)) {
+                    numbers = lines.map(String::trim).filter(line -> !line.isEmpty()).toList();
+                }
+                String expected = sumSequential(numbers);
+                System.out.printf("%s with addNumericStrings (%.2f s)%n",
+                        expected.equals(sum) ? "same" : "DIFFERENT", (System.nanoTime() - start) / 1e9);
+                if (!expected.equals(sum)) {
+                    System.exit(1);
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+}
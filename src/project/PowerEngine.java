@@ -0,0 +1,261 @@
+package project;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Arrays;
+
+/**
+ * Raises numbers to integer powers by repeated squaring: the exponent is read bit by bit, the base is squared
+ * for every bit and multiplied into the result for every set bit, so base^n takes about 2 log2(n) multiplications
+ * in a loop instead of n nested calls.
+ * There are modes for doubles, for exact powers of BigNumber integers, for BigDecimal with a given precision,
+ * and for modular powers on long with a long or BigNumber exponent. The batch methods raise many bases
+ * to the same exponent on all cores.
+ */
+public final class PowerEngine{
+
+    private static final long SAFE_MODULUS = 3_037_000_499L;     // Largest modulus whose products fit in a long
+    private static final int GUARD_DIGITS = 10;                  // Extra precision of the BigDecimal steps
+
+    private PowerEngine() {
+    }
+
+    /**
+     * Returns base raised to the exponent; a negative exponent gives 1 / base^-exponent, like raiseToPower.
+     *
+     * @param base     The base number.
+     * @param exponent The exponent, which may be negative.
+     * @return The power, which may be infinite or 0 when it is out of the range of a double.
+     */
+    public static double power(double base, int exponent) {
+        if (exponent >= 0) {
+            return power(base, (long) exponent);
+        }
+        double power = power(base, -(long) exponent);
+        // When base^n overflows, its reciprocal may still be a (subnormal) double: use powers of 1 / base instead.
+        return Double.isInfinite(power) ? power(1.0 / base, -(long) exponent) : 1.0 / power;
+    }
+
+    private static double power(double base, long n) {
+        double result = 1.0;
+        double square = base;
+        while (n > 0) {
+            if ((n & 1) != 0) {
+                result *= square;
+            }
+            n >>>= 1;
+            if (n > 0) {
+                square *= square;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the exact power of an integer.
+     *
+     * @param base     The base.
+     * @param exponent The exponent, at least 0.
+     * @return base^exponent, where 0^0 is 1.
+     * @throws IllegalArgumentException If the exponent is negative.
+     */
+    public static BigNumber power(BigNumber base, int exponent) {
+        if (exponent < 0) {
+            throw new IllegalArgumentException("The exact power of an integer needs an exponent >= 0, not " + exponent);
+        }
+        BigNumber result = BigNumber.ONE;
+        BigNumber square = base;
+        for (int n = exponent; n > 0; ) {
+            if ((n & 1) != 0) {
+                result = result.multiply(square);
+            }
+            n >>>= 1;
+            if (n > 0) {
+                square = square.square();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the power of a decimal number, rounded to the given precision.
+     * The steps are rounded to GUARD_DIGITS more digits than asked for, and only the result to the precision.
+     *
+     * @param base     The base.
+     * @param exponent The exponent, which may be negative.
+     * @param context  The precision and rounding of the result; its precision must be at least 1.
+     * @return base^exponent rounded to the context.
+     * @throws ArithmeticException If the base is 0 and the exponent negative.
+     */
+    public static BigDecimal power(BigDecimal base, int exponent, MathContext context) {
+        if (context.getPrecision() == 0) {
+            throw new IllegalArgumentException("A power of a BigDecimal needs a precision of at least 1");
+        }
+        MathContext steps = new MathContext(context.getPrecision() + GUARD_DIGITS, RoundingMode.HALF_EVEN);
+        long n = Math.abs((long) exponent);
+        BigDecimal result = BigDecimal.ONE;
+        BigDecimal square = base;
+        while (n > 0) {
+            if ((n & 1) != 0) {
+                result = result.multiply(square, steps);
+            }
+            n >>>= 1;
+            if (n > 0) {
+                square = square.multiply(square, steps);
+            }
+        }
+        if (exponent < 0) {
+            result = BigDecimal.ONE.divide(result, steps);
+        }
+        return result.round(context);
+    }
+
+    /**
+     * Returns base^exponent mod modulus.
+     *
+     * @param base     The base; a negative base is taken mod modulus first.
+     * @param exponent The exponent, at least 0.
+     * @param modulus  The modulus, at least 1.
+     * @return The power in [0, modulus).
+     * @throws IllegalArgumentException If the exponent is negative or the modulus is not positive.
+     */
+    public static long modPow(long base, long exponent, long modulus) {
+        checkModulus(modulus);
+        if (exponent < 0) {
+            throw new IllegalArgumentException("A modular power needs an exponent >= 0, not " + exponent);
+        }
+        long result = 1 % modulus;
+        long square = Math.floorMod(base, modulus);
+        while (exponent > 0) {
+            if ((exponent & 1) != 0) {
+                result = multiplyMod(result, square, modulus);
+            }
+            exponent >>>= 1;
+            if (exponent > 0) {
+                square = multiplyMod(square, square, modulus);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns base^exponent mod modulus for an exponent of any length.
+     * The exponent is read one decimal digit at a time from the most significant, since its limbs are decimal:
+     * for every digit d the result is raised to the 10th power and multiplied by base^d from a table.
+     *
+     * @param base     The base; a negative base is taken mod modulus first.
+     * @param exponent The exponent, at least 0.
+     * @param modulus  The modulus, at least 1.
+     * @return The power in [0, modulus).
+     * @throws IllegalArgumentException If the exponent is negative or the modulus is not positive.
+     */
+    public static long modPow(long base, BigNumber exponent, long modulus) {
+        checkModulus(modulus);
+        if (exponent.signum() < 0) {
+            throw new IllegalArgumentException("A modular power needs an exponent >= 0, not " + exponent);
+        }
+        long b = Math.floorMod(base, modulus);
+        long[] digitPowers = new long[10];          // base^d mod modulus for every digit d
+        digitPowers[0] = 1 % modulus;
+        for (int d = 1; d < 10; d++) {
+            digitPowers[d] = multiplyMod(digitPowers[d - 1], b, modulus);
+        }
+
+        int[] limbs = exponent.limbs();
+        long result = 1 % modulus;
+        for (int i = limbs.length - 1; i >= 0; i--) {
+            for (int unit = BigNumber.BASE / 10; unit > 0; unit /= 10) {
+                int digit = limbs[i] / unit % 10;
+                result = multiplyMod(power10(result, modulus), digitPowers[digit], modulus);
+            }
+        }
+        return result;
+    }
+
+    private static long power10(long x, long modulus) {
+        long x2 = multiplyMod(x, x, modulus);
+        long x4 = multiplyMod(x2, x2, modulus);
+        long x8 = multiplyMod(x4, x4, modulus);
+        return multiplyMod(x8, x2, modulus);
+    }
+
+    /**
+     * Returns a * b mod modulus for a and b in [0, modulus). When the product may not fit in a long,
+     * it is built by doubling and adding (Russian peasant multiplication), reducing after every step.
+     */
+    static long multiplyMod(long a, long b, long modulus) {
+        if (modulus <= SAFE_MODULUS) {
+            return a * b % modulus;
+        }
+        long result = 0;
+        while (b > 0) {
+            if ((b & 1) != 0) {
+                result = addMod(result, a, modulus);
+            }
+            a = addMod(a, a, modulus);
+            b >>>= 1;
+        }
+        return result;
+    }
+
+    /**
+     * Returns a + b mod modulus for a and b in [0, modulus), without overflowing.
+     */
+    private static long addMod(long a, long b, long modulus) {
+        return a >= modulus - b ? a - (modulus - b) : a + b;
+    }
+
+    private static void checkModulus(long modulus) {
+        if (modulus <= 0) {
+            throw new IllegalArgumentException("A modulus must be positive, not " + modulus);
+        }
+    }
+
+    /**
+     * Raises every base to the same exponent, in parallel.
+     *
+     * @param bases    The bases.
+     * @param exponent The exponent, which may be negative.
+     * @return The powers, in the order of the bases.
+     */
+    public static double[] powerAll(double[] bases, int exponent) {
+        double[] powers = new double[bases.length];
+        Arrays.parallelSetAll(powers, i -> power(bases[i], exponent));
+        return powers;
+    }
+
+    /**
+     * Raises every integer base to the same exponent exactly, in parallel.
+     *
+     * @param bases    The bases.
+     * @param exponent The exponent, at least 0.
+     * @return The powers, in the order of the bases.
+     */
+    public static BigNumber[] powerAll(BigNumber[] bases, int exponent) {
+        if (exponent < 0) {
+            throw new IllegalArgumentException("The exact power of an integer needs an exponent >= 0, not " + exponent);
+        }
+        BigNumber[] powers = new BigNumber[bases.length];
+        Arrays.parallelSetAll(powers, i -> power(bases[i], exponent));
+        return powers;
+    }
+
+    /**
+     * Raises every base to the same exponent mod modulus, in parallel.
+     *
+     * @param bases    The bases.
+     * @param exponent The exponent, at least 0.
+     * @param modulus  The modulus, at least 1.
+     * @return The powers, in the order of the bases.
+     */
+    public static long[] modPowAll(long[] bases, long exponent, long modulus) {
+        checkModulus(modulus);
+        if (exponent < 0) {
+            throw new IllegalArgumentException("A modular power needs an exponent >= 0, not " + exponent);
+        }
+        long[] powers = new long[bases.length];
+        Arrays.parallelSetAll(powers, i -> modPow(bases[i], exponent, modulus));
+        return powers;
+    }
+}
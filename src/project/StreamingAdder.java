@@ -0,0 +1,198 @@
+package project;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Adds two nonnegative decimal numbers stored in files, however many digits they have, with fixed memory.
+ * Like addNumericStrings it goes from the last digit to the first, carrying as it goes:
+ * - Both files are read backwards in blocks of BLOCK_SIZE bytes with positional FileChannel reads.
+ * - The sum digits come out last digit first; every block of them is appended to a temporary file.
+ * - One final pass reads the temporary file backwards block by block, reverses each block,
+ * and appends it to the output file, which then holds the sum most significant digit first.
+ * Every read and write covers a whole block and the blocks follow each other, so the disk access stays sequential.
+ * Trailing whitespace, such as a final newline, is ignored; any other byte that is not a digit is an error.
+ * As with addNumericStrings, the sum has as many digits as the longer number, plus one for a final carry.
+ * <p>
+ * Usage: java project.StreamingAdder firstFile secondFile outputFile
+ */
+public class StreamingAdder{
+
+    static final int BLOCK_SIZE = 1 << 20;      // Bytes read or written at once
+
+    public static void main(String[] args) {
+        if (args.length != 3) {
+            System.err.println("Usage: java project.StreamingAdder firstFile secondFile outputFile");
+            System.exit(2);
+        }
+        try {
+            long start = System.nanoTime();
+            long digits = add(Paths.get(args[0]), Paths.get(args[1]), Paths.get(args[2]));
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%d digits written to %s in %.2f s (%.0f MB/s)%n",
+                    digits, args[2], seconds, digits / seconds / 1e6);
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Adds the numbers in two files and writes the sum to a third, replacing it.
+     *
+     * @param first  The file with the first number.
+     * @param second The file with the second number.
+     * @param output The file the sum is written to.
+     * @return The number of digits of the sum.
+     * @throws IOException If a file cannot be read or written, or holds something that is not a digit.
+     */
+    public static long add(Path first, Path second, Path output) throws IOException {
+        return add(first, second, output, BLOCK_SIZE);
+    }
+
+    static long add(Path first, Path second, Path output, int blockSize) throws IOException {
+        Path directory = output.toAbsolutePath().getParent();
+        Path reversed = Files.createTempFile(directory, output.getFileName().toString(), ".reversed");
+        try {
+            long digits;
+            try (FileChannel a = FileChannel.open(first, StandardOpenOption.READ);
+                 FileChannel b = FileChannel.open(second, StandardOpenOption.READ);
+                 FileChannel sum = FileChannel.open(reversed, StandardOpenOption.WRITE)) {
+                digits = addBackwards(a, first, b, second, sum, blockSize);
+            }
+            try (FileChannel in = FileChannel.open(reversed, StandardOpenOption.READ);
+                 FileChannel out = FileChannel.open(output, StandardOpenOption.WRITE,
+                         StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                reverse(in, digits, out, blockSize);
+            }
+            return digits;
+        } finally {
+            Files.deleteIfExists(reversed);
+        }
+    }
+
+    /**
+     * Adds the numbers block by block from their last digits and appends the sum digits, last digit first.
+     *
+     * @return The number of digits written.
+     */
+    private static long addBackwards(FileChannel a, Path first, FileChannel b, Path second, FileChannel sum,
+                                     int blockSize) throws IOException {
+        long lengthA = digitsEnd(a);
+        long lengthB = digitsEnd(b);
+        long length = Math.max(lengthA, lengthB);
+        ByteBuffer blockA = ByteBuffer.allocate(blockSize);
+        ByteBuffer blockB = ByteBuffer.allocate(blockSize);
+        ByteBuffer blockSum = ByteBuffer.allocate(blockSize);
+        byte[] digitsA = blockA.array(), digitsB = blockB.array(), digitsSum = blockSum.array();
+
+        int carry = 0;
+        for (long done = 0; done < length; ) {
+            int n = (int) Math.min(blockSize, length - done);
+            readBlock(a, lengthA, done, n, blockA);
+            readBlock(b, lengthB, done, n, blockB);
+            for (int i = n - 1, k = 0; i >= 0; i--, k++) {
+                int value1 = digitsA[i] - '0';
+                int value2 = digitsB[i] - '0';
+                if ((value1 | value2) < 0 || value1 > 9 || value2 > 9) {
+                    Path file = value1 < 0 || value1 > 9 ? first : second;
+                    long position = (value1 < 0 || value1 > 9 ? lengthA : lengthB) - done - n + i;
+                    throw new IOException(file + ": not a digit at byte " + position);
+                }
+                int addition = value1 + value2 + carry;
+                carry = addition >= 10 ? 1 : 0;
+                digitsSum[k] = (byte) ('0' + addition - 10 * carry);
+            }
+            blockSum.clear().limit(n);
+            writeFully(sum, blockSum);
+            done += n;
+        }
+        if (carry > 0) {
+            blockSum.clear();
+            blockSum.put((byte) '1').flip();
+            writeFully(sum, blockSum);
+            length++;
+        }
+        return length;
+    }
+
+    /**
+     * Reads the n digits that end done digits before the end of the number into the start of the buffer.
+     * Digits before the start of the file read as '0', which pads the shorter number like padWithZeros does.
+     */
+    private static void readBlock(FileChannel channel, long length, long done, int n, ByteBuffer block)
+            throws IOException {
+        long end = length - done;
+        long start = end - n;
+        int missing = (int) Math.min(n, Math.max(0, -start));
+        byte[] bytes = block.array();
+        for (int i = 0; i < missing; i++) {
+            bytes[i] = '0';
+        }
+        block.clear().position(missing).limit(n);
+        readFully(channel, block, Math.max(0, start));
+    }
+
+    /**
+     * Copies the digits of the temporary file to the output in reverse order:
+     * its blocks are read from the last to the first, and every block is reversed before it is written.
+     */
+    private static void reverse(FileChannel in, long length, FileChannel out, int blockSize) throws IOException {
+        ByteBuffer block = ByteBuffer.allocate(blockSize);
+        byte[] bytes = block.array();
+        for (long end = length; end > 0; ) {
+            int n = (int) Math.min(blockSize, end);
+            block.clear().limit(n);
+            readFully(in, block, end - n);
+            for (int i = 0, j = n - 1; i < j; i++, j--) {
+                byte t = bytes[i];
+                bytes[i] = bytes[j];
+                bytes[j] = t;
+            }
+            block.flip();
+            writeFully(out, block);
+            end -= n;
+        }
+    }
+
+    /**
+     * Returns the length of the file without its trailing whitespace.
+     */
+    private static long digitsEnd(FileChannel channel) throws IOException {
+        ByteBuffer tail = ByteBuffer.allocate(64);
+        long end = channel.size();
+        while (end > 0) {
+            int n = (int) Math.min(tail.capacity(), end);
+            tail.clear().limit(n);
+            readFully(channel, tail, end - n);
+            for (int i = n - 1; i >= 0; i--, end--) {
+                if (!Character.isWhitespace(tail.get(i))) {
+                    return end;
+                }
+            }
+        }
+        return 0;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException("The file ended while it was read");
+            }
+            position += read;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -19,21 +19,14 @@ public class work1{
 
     /**
      * Calculates the result of raising a given base to a specified exponent.
+     * PowerEngine squares the base for every bit of the exponent, so this takes O(log n) multiplications
+     * and no recursion, even for exponents in the millions.
      *
      * @param base     The base number.
      * @param exponent The exponent to which the base is raised.
      * @return The result of base raised to the power of the exponent.
      */
     private static double raiseToPower(double base, int exponent) {
-        if (exponent == 0) {
-            // Any number raised to the power of 0 is 1
-            return 1.0;
-        } else if (exponent > 0) {
-            // Positive exponent: Multiply base by itself (exponent - 1) times
-            return base * raiseToPower(base, exponent - 1);
-        } else {
-            // Negative exponent: Calculate the reciprocal and multiply recursively
-            return 1.0 / (base * raiseToPower(base, -exponent - 1));
-        }
+        return PowerEngine.power(base, exponent);
     }
 }
@@ -7,6 +7,11 @@ public class work2{
     private static final int BASE = 10;
 
     public static void main(String[] args) {
+        // With three file names, add numbers that are too long to read into memory
+        if (args.length == 3) {
+            StreamingAdder.main(args);
+            return;
+        }
         Scanner sc = new Scanner(System.in);
         System.out.print("Enter first number:  ");
         String n1 = sc.nextLine();
@@ -24,7 +29,7 @@ public class work2{
      * @param n2 The second number.
      * @return sum String representation of n1 + n2
      */
-    private static String addNumericStrings(String n1, String n2) {
+    static String addNumericStrings(String n1, String n2) {
         int maxLength = Math.max(n1.length(), n2.length());
         n1 = padWithZeros(n1, maxLength);
         n2 = padWithZeros(n2, maxLength);
@@ -56,10 +61,14 @@ public class work2{
      * @return A new string that is the input string padded with leading zeros to reach the specified length.
      */
     private static String padWithZeros(String str, int length) {
-        StringBuilder paddedStr = new StringBuilder(str);
-        while (paddedStr.length() < length) {
-            paddedStr.insert(0, '0');
+        if (str.length() >= length) {
+            return str;
+        }
+        // Appending the zeros first and then the string copies every character once
+        StringBuilder paddedStr = new StringBuilder(length);
+        for (int i = str.length(); i < length; i++) {
+            paddedStr.append('0');
         }
-        return paddedStr.toString();
+        return paddedStr.append(str).toString();
     }
 }